@@ -0,0 +1,74 @@
+package com.app;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies, recorded from any number of threads. Every power of two is split in
+ * SUB_BUCKETS linear buckets, so a percentile is reported with a relative error below 1 / SUB_BUCKETS
+ * (~3%) over the whole range, with a fixed footprint and one atomic increment per value.
+ *
+ * @author Angel Cruz
+ * */
+final class LatencyHistogram {
+    /* Linear buckets per power of two, 2^SUB_BITS */
+    static final int SUB_BITS = 5, SUB_BUCKETS = 1 << SUB_BITS;
+    /* Values are in nanoseconds, up to 2^40 ns (~18 minutes) */
+    static final int MAX_BITS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS);
+
+    void record(long nanos)
+    {
+        counts.incrementAndGet(index(Math.max(0, Math.min(nanos, (1L << MAX_BITS) - 1))));
+    }
+
+    /* Values below SUB_BUCKETS have a bucket each, above it the bucket is picked by the top SUB_BITS + 1 bits */
+    static int index(long value)
+    {
+        if(value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (exponent + 1) * SUB_BUCKETS + (int) ((value >>> exponent) - SUB_BUCKETS);
+    }
+
+    /* Upper bound of the values of a bucket */
+    static long upperBound(int index)
+    {
+        if(index < SUB_BUCKETS)
+            return index;
+        int exponent = index / SUB_BUCKETS - 1;
+        return ((long) (SUB_BUCKETS + index % SUB_BUCKETS + 1) << exponent) - 1;
+    }
+
+    long count()
+    {
+        long total = 0;
+        for(int i = 0; i < counts.length(); i++)
+            total += counts.get(i);
+        return total;
+    }
+
+    /**
+     * @param quantile Quantile, in [0, 1], e.g. 0.99 for p99
+     * @return Upper bound of the bucket holding the quantile, in nanoseconds, 0 when empty
+     * */
+    long percentile(double quantile)
+    {
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for(int i = 0; i < snapshot.length; i++)
+            total += snapshot[i] = counts.get(i);
+        if(total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for(int i = 0; i < snapshot.length; i++)
+        {
+            seen += snapshot[i];
+            if(seen >= rank)
+                return upperBound(i);
+        }
+        return upperBound(snapshot.length - 1);
+    }
+}
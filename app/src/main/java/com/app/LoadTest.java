@@ -0,0 +1,78 @@
+package com.app;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load generator for the ScoringServer, to load-test it locally. It keeps the given number
+ * of requests in flight with the JDK HttpClient for the given duration, every request carrying random
+ * samples, and reports the throughput and the client-side latency percentiles.
+ *
+ * java com.app.LoadTest http://localhost:8080/score concurrency seconds features [rows per request]
+ *
+ * @author Angel Cruz
+ * */
+public class LoadTest {
+    public static void main(String[] args) throws Exception
+    {
+        if(args.length < 4)
+        {
+            System.err.println("Usage: LoadTest <url> <concurrency> <seconds> <features> [rows per request]");
+            System.exit(2);
+        }
+        URI uri = URI.create(args[0]);
+        int concurrency = Integer.parseInt(args[1]);
+        long seconds = Long.parseLong(args[2]);
+        int features = Integer.parseInt(args[3]);
+        int rows = (args.length > 4) ? Integer.parseInt(args[4]) : 1;
+
+        // A few distinct bodies, built once
+        Random random = new Random(42);
+        String[] bodies = new String[64];
+        for(int b = 0; b < bodies.length; b++)
+        {
+            StringBuilder body = new StringBuilder();
+            for(int i = 0; i < rows; i++)
+            {
+                for(int j = 0; j < features; j++)
+                    body.append(j == 0 ? "" : ",").append(random.nextGaussian() * 3 + 4);
+                body.append('\n');
+            }
+            bodies[b] = body.toString();
+        }
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Semaphore slots = new Semaphore(concurrency);
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder ok = new LongAdder(), failed = new LongAdder();
+
+        long start = System.nanoTime(), end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for(int k = 0; System.nanoTime() < end; k++)
+        {
+            slots.acquire();
+            HttpRequest request = HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(bodies[k % bodies.length])).build();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                latency.record(System.nanoTime() - sent);
+                if(error == null && response.statusCode() == 200)
+                    ok.increment();
+                else
+                    failed.increment();
+                slots.release();
+            });
+        }
+        slots.acquire(concurrency);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("requests %d, failed %d, %.0f requests/s, %.0f rows/s%n", ok.sum(), failed.sum(),
+                ok.sum() / elapsed, ok.sum() * rows / elapsed);
+        System.out.printf("latency p50 %.0f us, p99 %.0f us, p99.9 %.0f us%n", latency.percentile(0.5) / 1e3,
+                latency.percentile(0.99) / 1e3, latency.percentile(0.999) / 1e3);
+    }
+}
@@ -0,0 +1,256 @@
+package com.app;
+
+import com.models.ScoringModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the rows of concurrent scoring requests into batched predictInto calls. A batching thread
+ * takes the first waiting request, then keeps collecting requests until the batch has max_rows rows or
+ * max_delay has passed since the first one, scores the whole batch on one snapshot of the model and
+ * hands every request its slice of the results. Callers never block, the completion of a request runs
+ * on the given executor.
+ *
+ * @author Angel Cruz
+ * */
+final class MicroBatcher implements AutoCloseable {
+    /**
+     * Scoring request, the rows of a single HTTP call.
+     * */
+    static final class Request {
+        final double[] rows;
+        final int width;
+        final Callback callback;
+
+        Request(double[] rows, int width, Callback callback)
+        {
+            this.rows = rows;
+            this.width = width;
+            this.callback = callback;
+        }
+
+        int rows()
+        {
+            return rows.length / width;
+        }
+    }
+
+    interface Callback {
+        /* Called with one probability per row of the request */
+        void completed(double[] probabilities);
+
+        void failed(Exception error);
+    }
+
+    private final Supplier<ScoringModel> model;
+    private final int max_rows;
+    private final long max_delay_nanos;
+    private final Executor completions;
+    private final BlockingQueue<Request> queue;
+    private final Thread[] threads;
+    private volatile boolean running = true;
+
+    final LongAdder batches = new LongAdder(), batched_rows = new LongAdder();
+
+    /**
+     * @param model           Source of the model, read once per batch
+     * @param max_rows        Rows of a batch, a single larger request is still scored alone
+     * @param max_delay_nanos Time the first request of a batch may wait for more requests, 0 to only
+     *                        batch the requests that are already waiting
+     * @param capacity        Maximum number of waiting requests, submit fails beyond it
+     * @param threads         Number of batching threads
+     * @param completions     Executor running the callbacks
+     * */
+    MicroBatcher(Supplier<ScoringModel> model, int max_rows, long max_delay_nanos, int capacity, int threads, Executor completions)
+    {
+        if(max_rows <= 0 || max_delay_nanos < 0 || capacity <= 0 || threads <= 0)
+            throw new IllegalArgumentException("Invalid batching. max_rows " + max_rows + ", max_delay " + max_delay_nanos
+                    + " ns, capacity " + capacity + ", threads " + threads + ".");
+        this.model = model;
+        this.max_rows = max_rows;
+        this.max_delay_nanos = max_delay_nanos;
+        this.completions = completions;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.threads = new Thread[threads];
+        for(int i = 0; i < threads; i++)
+        {
+            this.threads[i] = new Thread(this::run, "scoring-batcher-" + i);
+            this.threads[i].setDaemon(true);
+            this.threads[i].start();
+        }
+    }
+
+    /**
+     * @return false when too many requests are already waiting or the batcher is closed, the request is
+     * then dropped and its callback is never called.
+     * */
+    boolean submit(Request request)
+    {
+        if(!running || !queue.offer(request))
+            return false;
+
+        // Closed meanwhile, take the request back unless the shutdown drain already failed it
+        return running || !queue.remove(request);
+    }
+
+    private void run()
+    {
+        List<Request> batch = new ArrayList<>();
+        // Batch buffers, grown on demand and reused by every batch of this thread
+        double[] rows = new double[0], out = new double[0];
+
+        while(running)
+        {
+            try
+            {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null)
+                    continue;
+
+                // Collect more requests until the batch is full or the first request has waited long enough
+                batch.add(first);
+                int n = first.rows();
+                long deadline = System.nanoTime() + max_delay_nanos;
+                while(n < max_rows)
+                {
+                    Request next = queue.poll();
+                    if(next == null)
+                    {
+                        long wait = deadline - System.nanoTime();
+                        if(wait <= 0 || (next = queue.poll(wait, TimeUnit.NANOSECONDS)) == null)
+                            break;
+                    }
+                    batch.add(next);
+                    n += next.rows();
+                }
+
+                // One snapshot for the whole batch, every request of it is scored by the same parameters
+                ScoringModel scorer = model.get();
+                int d = scorer.features();
+                if(rows.length < n * d)
+                    rows = new double[Math.max(n, max_rows) * d];
+                if(out.length < n)
+                    out = new double[Math.max(n, max_rows)];
+
+                int packed = 0;
+                for(Request request : batch)
+                {
+                    if(request.width != d)
+                        continue;
+                    System.arraycopy(request.rows, 0, rows, packed * d, request.rows.length);
+                    packed += request.rows();
+                }
+                scorer.predictInto(rows, 0, packed, out, 0);
+                batches.increment();
+                batched_rows.add(packed);
+
+                int offset = 0;
+                for(Request request : batch)
+                {
+                    if(request.width != d)
+                    {
+                        fail(request, new IllegalArgumentException("Expected " + d + " features and got " + request.width + "."));
+                        continue;
+                    }
+                    double[] result = new double[request.rows()];
+                    System.arraycopy(out, offset, result, 0, result.length);
+                    offset += result.length;
+                    dispatch(() -> request.callback.completed(result));
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // Closed while the batch was being collected, its requests are already off the queue
+                for(Request request : batch)
+                    fail(request, shutdown());
+                break;
+            }
+            catch (RuntimeException e)
+            {
+                for(Request request : batch)
+                    fail(request, e);
+            }
+            finally
+            {
+                batch.clear();
+            }
+        }
+
+        drain();
+    }
+
+    /* Fail whatever is left in the queue once closed */
+    private void drain()
+    {
+        Request request;
+        while((request = queue.poll()) != null)
+            fail(request, shutdown());
+    }
+
+    private static Exception shutdown()
+    {
+        return new IllegalStateException("The scoring service is shutting down.");
+    }
+
+    private void fail(Request request, Exception error)
+    {
+        dispatch(() -> request.callback.failed(error));
+    }
+
+    /* Callbacks run on the executor, or on the batching thread once the executor is shut down */
+    private void dispatch(Runnable callback)
+    {
+        try
+        {
+            completions.execute(callback);
+        }
+        catch (RejectedExecutionException e)
+        {
+            callback.run();
+        }
+    }
+
+    int waiting()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Method to stop batching. It returns once every request accepted by submit has been scored or
+     * failed, and its callback handed to the executor.
+     * */
+    @Override
+    public void close()
+    {
+        running = false;
+        for(Thread thread : threads)
+            thread.interrupt();
+
+        boolean interrupted = false;
+        for(Thread thread : threads)
+        {
+            while(thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        drain();
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
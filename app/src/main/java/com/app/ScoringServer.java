@@ -0,0 +1,278 @@
+package com.app;
+
+import com.models.ModelFile;
+import com.models.ScoringModel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * HTTP scoring service on the JDK's built-in server (com.sun.net.httpserver), with no other dependency.
+ *
+ *  POST /score    one sample per line, comma-separated feature values, answers one probability per line
+ *  GET  /metrics  counters, throughput and p50/p99 latencies, one "name value" pair per line
+ *  GET  /health   "ok"
+ *
+ * The rows of concurrent requests are coalesced by a MicroBatcher into batched predictInto calls. The
+ * handlers never wait for the scoring: they queue the rows and return, the response is written when the
+ * batch completes. Requests run on a virtual thread each when the JVM supports them (JDK 21+), otherwise
+ * on a cached pool of daemon threads.
+ *
+ * @author Angel Cruz
+ * */
+public class ScoringServer implements AutoCloseable {
+    /* Defaults of the batching, overridden with -Dcom.app.batch.rows, -Dcom.app.batch.delay.us and -Dcom.app.batchers */
+    static final int BATCH_ROWS = 256;
+    static final long BATCH_DELAY_US = 100;
+    static final int QUEUE_CAPACITY = 65536;
+    static final int BACKLOG = 4096;
+    /* Time close waits for the answers of the requests still in flight */
+    static final long SHUTDOWN_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final MicroBatcher batcher;
+    private final Supplier<ScoringModel> model;
+    private final long started = System.nanoTime();
+
+    // Counters of the /metrics endpoint
+    private final LongAdder requests = new LongAdder(), rows = new LongAdder(), rejected = new LongAdder(), errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // Requests accepted by the batcher and not answered yet
+    private final AtomicInteger in_flight = new AtomicInteger();
+
+    /**
+     * @param model          Source of the model, called once per batch, so a new snapshot can be published
+     *                       while the server runs
+     * @param address        Address to listen on, port 0 for any free port
+     * @param batch_rows     Maximum rows of a batch
+     * @param batch_delay_us Time a request may wait for others to fill its batch, in microseconds
+     * @param batchers       Number of batching threads
+     * */
+    public ScoringServer(Supplier<ScoringModel> model, InetSocketAddress address, int batch_rows, long batch_delay_us,
+                         int batchers) throws IOException
+    {
+        this.model = model;
+        this.executor = newRequestExecutor();
+        this.batcher = new MicroBatcher(model, batch_rows, TimeUnit.MICROSECONDS.toNanos(batch_delay_us), QUEUE_CAPACITY,
+                batchers, executor);
+        this.server = HttpServer.create(address, BACKLOG);
+        this.server.setExecutor(executor);
+        this.server.createContext("/score", this::score);
+        this.server.createContext("/metrics", exchange -> respond(exchange, 200, metrics()));
+        this.server.createContext("/health", exchange -> respond(exchange, 200, "ok\n"));
+    }
+
+    /**
+     * Executor of the requests, a virtual thread per request when available. Looked up reflectively, so
+     * the same build runs on JDK 17.
+     * */
+    static ExecutorService newRequestExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "scoring-request-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+
+    public void start()
+    {
+        server.start();
+    }
+
+    public int port()
+    {
+        return server.getAddress().getPort();
+    }
+
+    private void score(HttpExchange exchange) throws IOException
+    {
+        long start = System.nanoTime();
+        if(!exchange.getRequestMethod().equals("POST"))
+        {
+            respond(exchange, 405, "Use POST with one comma-separated sample per line.\n");
+            return;
+        }
+
+        double[] values;
+        int width = model.get().features();
+        try
+        {
+            values = parse(exchange.getRequestBody().readAllBytes(), width);
+        }
+        catch (IllegalArgumentException e)
+        {
+            errors.increment();
+            respond(exchange, 400, e.getMessage() + "\n");
+            return;
+        }
+
+        MicroBatcher.Request request = new MicroBatcher.Request(values, width, new MicroBatcher.Callback() {
+            @Override
+            public void completed(double[] probabilities)
+            {
+                StringBuilder body = new StringBuilder(probabilities.length * 20);
+                for(double p : probabilities)
+                    body.append(p).append('\n');
+                finish(exchange, 200, body.toString(), start, probabilities.length);
+            }
+
+            @Override
+            public void failed(Exception error)
+            {
+                errors.increment();
+                finish(exchange, (error instanceof IllegalArgumentException) ? 400 : 500, error.getMessage() + "\n", start, 0);
+            }
+        });
+        in_flight.incrementAndGet();
+        if(!batcher.submit(request))
+        {
+            in_flight.decrementAndGet();
+            rejected.increment();
+            respond(exchange, 503, "Too many pending requests.\n");
+        }
+    }
+
+    private void finish(HttpExchange exchange, int status, String body, long start, int scored)
+    {
+        try
+        {
+            respond(exchange, status, body);
+        }
+        catch (IOException e)
+        {
+            // The client went away, nothing left to answer
+            errors.increment();
+        }
+        requests.increment();
+        rows.add(scored);
+        latency.record(System.nanoTime() - start);
+        in_flight.decrementAndGet();
+    }
+
+    /**
+     * Method to parse the samples of a request, every line must have width values.
+     * */
+    static double[] parse(byte[] body, int width)
+    {
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\r?\n");
+        double[] values = new double[lines.length * width];
+        int n = 0;
+        for(int i = 0; i < lines.length; i++)
+        {
+            if(lines[i].isBlank())
+                continue;
+            String[] cells = lines[i].split(",");
+            if(cells.length != width)
+                throw new IllegalArgumentException("Line " + (i + 1) + " has " + cells.length + " values, expected " + width + ".");
+            for(String cell : cells)
+            {
+                try
+                {
+                    values[n++] = Double.parseDouble(cell.trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IllegalArgumentException("Invalid value \"" + cell.trim() + "\" in line " + (i + 1) + ".");
+                }
+            }
+        }
+        if(n == 0)
+            throw new IllegalArgumentException("No samples in the request.");
+        return (n == values.length) ? values : Arrays.copyOf(values, n);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return Counters, throughput since the start and latency percentiles (in microseconds) of the
+     * answered /score requests, one "name value" pair per line.
+     * */
+    public String metrics()
+    {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long answered = requests.sum(), scored = rows.sum(), batches = batcher.batches.sum();
+        return "requests " + answered + "\n"
+                + "rows " + scored + "\n"
+                + "batches " + batches + "\n"
+                + "rows_per_batch " + (batches == 0 ? 0 : (double) batcher.batched_rows.sum() / batches) + "\n"
+                + "rejected " + rejected.sum() + "\n"
+                + "errors " + errors.sum() + "\n"
+                + "pending " + batcher.waiting() + "\n"
+                + "requests_per_second " + answered / seconds + "\n"
+                + "rows_per_second " + scored / seconds + "\n"
+                + "latency_p50_us " + latency.percentile(0.50) / 1000.0 + "\n"
+                + "latency_p99_us " + latency.percentile(0.99) / 1000.0 + "\n"
+                + "latency_p999_us " + latency.percentile(0.999) / 1000.0 + "\n";
+    }
+
+    @Override
+    public void close()
+    {
+        // Every request taken by the batcher gets its answer, or a 500 when it was not scored yet, and the
+        // server only closes the connections once those answers are written
+        batcher.close();
+        long deadline = System.nanoTime() + SHUTDOWN_NANOS;
+        while(in_flight.get() > 0 && System.nanoTime() < deadline)
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Entry point, java com.app.ScoringServer model.lrm [port]. The model scores raw samples, the
+     * standardization saved with it is applied.
+     * */
+    public static void main(String[] args) throws Exception
+    {
+        if(args.length < 1)
+        {
+            System.err.println("Usage: ScoringServer <model" + ModelFile.EXTENSION + "> [port]");
+            System.exit(2);
+        }
+        ScoringModel model = ModelFile.read(Paths.get(args[0])).raw;
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : 8080;
+
+        ScoringServer server = new ScoringServer(() -> model, new InetSocketAddress(port),
+                Integer.getInteger("com.app.batch.rows", BATCH_ROWS),
+                Long.getLong("com.app.batch.delay.us", BATCH_DELAY_US),
+                Integer.getInteger("com.app.batchers", 1));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Scoring " + model.features() + " features on port " + server.port());
+    }
+}
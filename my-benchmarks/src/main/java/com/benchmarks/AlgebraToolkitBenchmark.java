@@ -0,0 +1,124 @@
+package com.benchmarks;
+
+import com.tools.AlgebraToolkit;
+import com.tools.DenseMatrix;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the AlgebraToolkit kernels used by the training loop. Each kernel is measured
+ * with the shapes it actually sees inside LogisticRegression.train_step:
+ *
+ *  - matmul.       X (N x d) . W (d x 1)
+ *  - mult.         diff (N x 1) * X (N x d)
+ *  - subtract.     y_pred (N x 1) - y_true (N x 1)
+ *  - reduce_mean.  dW (N x d) along axis 0
+ *  - transpose.    X (N x d)
+ *
+ * Every kernel is measured twice: on jagged double[][] and on the contiguous DenseMatrix layout.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class AlgebraToolkitBenchmark {
+    /* Number of samples (N) */
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int samples;
+
+    /* Number of features (d) */
+    @Param({"2", "8", "32"})
+    public int features;
+
+    AlgebraToolkit tools;
+    double[][] X;
+    double[][] W;
+    double[][] yPred;
+    double[][] yTrue;
+
+    DenseMatrix denseX;
+    DenseMatrix denseW;
+    DenseMatrix denseYPred;
+    DenseMatrix denseYTrue;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        tools = new AlgebraToolkit();
+        X = BenchmarkData.features(samples, features);
+        W = tools.randomNormal(new int[]{features, 1}, 0, 1);
+        yPred = BenchmarkData.column(samples, BenchmarkData.SEED + 1);
+        yTrue = BenchmarkData.column(samples, BenchmarkData.SEED + 2);
+
+        denseX = DenseMatrix.of(X);
+        denseW = DenseMatrix.of(W);
+        denseYPred = DenseMatrix.of(yPred);
+        denseYTrue = DenseMatrix.of(yTrue);
+    }
+
+    @Benchmark
+    public double[][] matmul()
+    {
+        return tools.matmul(X, W);
+    }
+
+    @Benchmark
+    public double[][] mult() throws Exception
+    {
+        return tools.mult(yPred, X);
+    }
+
+    @Benchmark
+    public double[][] subtract()
+    {
+        return tools.subtract(yPred, yTrue);
+    }
+
+    @Benchmark
+    public double[][] reduce_mean()
+    {
+        return tools.reduce_mean(X);
+    }
+
+    @Benchmark
+    public double[][] transpose()
+    {
+        return tools.transpose(X);
+    }
+
+    @Benchmark
+    public DenseMatrix matmulDense()
+    {
+        return tools.matmul(denseX, denseW);
+    }
+
+    @Benchmark
+    public DenseMatrix multDense() throws Exception
+    {
+        return tools.mult(denseYPred, denseX);
+    }
+
+    @Benchmark
+    public DenseMatrix subtractDense()
+    {
+        return tools.subtract(denseYPred, denseYTrue);
+    }
+
+    @Benchmark
+    public DenseMatrix reduce_meanDense()
+    {
+        return tools.reduce_mean(denseX);
+    }
+
+    @Benchmark
+    public DenseMatrix transposeDense()
+    {
+        return tools.transpose(denseX);
+    }
+}
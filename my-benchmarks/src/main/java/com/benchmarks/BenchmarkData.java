@@ -0,0 +1,75 @@
+package com.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Helper class to generate the synthetic datasets used by the benchmarks. The data is drawn from a
+ * fixed seed, so every run (and every fork) measures exactly the same inputs.
+ *
+ * @author Angel Cruz
+ * */
+final class BenchmarkData {
+    /* Seed shared by every benchmark */
+    static final long SEED = 42L;
+
+    private BenchmarkData()
+    {}
+
+    /**
+     * Method to build a N x d matrix of standard normal samples.
+     *
+     * @param rows Number of samples (N)
+     * @param cols Number of features (d)
+     * */
+    static double[][] features(int rows, int cols)
+    {
+        Random rand = new Random(SEED);
+        double[][] X = new double[rows][cols];
+
+        for(int i = 0; i < rows; i++)
+        {
+            for(int j = 0; j < cols; j++)
+            {
+                X[i][j] = rand.nextGaussian();
+            }
+        }
+        return X;
+    }
+
+    /**
+     * Method to build a N x 1 column of binary labels, linearly separable on the sum of the features,
+     * so the model has something meaningful to learn.
+     *
+     * @param X Samples generated by features()
+     * */
+    static double[][] labels(double[][] X)
+    {
+        double[][] y = new double[X.length][1];
+
+        for(int i = 0; i < X.length; i++)
+        {
+            double s = 0;
+            for(double x : X[i])
+                s += x;
+            y[i][0] = s > 0 ? 1.0 : 0.0;
+        }
+        return y;
+    }
+
+    /**
+     * Method to build a N x 1 column vector of uniform samples in [0, 1).
+     *
+     * @param rows Number of samples (N)
+     * @param seed Seed of the random generator
+     * */
+    static double[][] column(int rows, long seed)
+    {
+        Random rand = new Random(seed);
+        double[][] c = new double[rows][1];
+
+        for(int i = 0; i < rows; i++)
+            c[i][0] = rand.nextDouble();
+
+        return c;
+    }
+}
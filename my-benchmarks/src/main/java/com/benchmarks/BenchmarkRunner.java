@@ -0,0 +1,31 @@
+package com.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. It accepts the usual JMH command line (benchmark regex, -p, -f, ...)
+ * and always attaches the GC profiler, so every report carries the allocation rate
+ * (gc.alloc.rate / gc.alloc.rate.norm) next to the throughput.
+ *
+ * Usage. java -jar my-benchmarks/target/benchmarks.jar [jmh options] [regex]
+ *
+ * @author Angel Cruz
+ * */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException
+    {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.benchmarks;
+
+import com.tools.CsvDataset;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing the memory-mapped, parallel CsvDataset parser against the line-by-line
+ * BufferedReader / StringTokenizer / Double.parseDouble loading it replaced, on a standardized csv
+ * (two features and a label) of the given number of rows.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g"})
+@State(Scope.Benchmark)
+public class CsvDatasetBenchmark {
+    /* Number of samples of the file */
+    @Param({"100000", "1000000", "10000000"})
+    public int samples;
+
+    Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        Random rand = new Random(BenchmarkData.SEED);
+        file = Files.createTempFile("benchmark", ".csv");
+        try(BufferedWriter writer = Files.newBufferedWriter(file))
+        {
+            writer.write("feature_1,feature_2,target");
+            writer.newLine();
+            for(int i = 0; i < samples; i++)
+            {
+                writer.write(rand.nextGaussian() + "," + rand.nextGaussian() + "," + (double) rand.nextInt(2));
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public CsvDataset csvDataset() throws IOException
+    {
+        return CsvDataset.read(file);
+    }
+
+    @Benchmark
+    public List<List<Double>> bufferedReader() throws IOException
+    {
+        List<List<Double>> data = new ArrayList<>();
+        try(BufferedReader reader = Files.newBufferedReader(file))
+        {
+            String line;
+            reader.readLine();
+            while((line = reader.readLine()) != null)
+            {
+                StringTokenizer tokens = new StringTokenizer(line, ",");
+                List<Double> sample = new ArrayList<>();
+                while(tokens.hasMoreTokens())
+                    sample.add(Double.parseDouble(tokens.nextToken()));
+                data.add(sample);
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,103 @@
+package com.benchmarks;
+
+import com.models.LogisticRegression;
+import com.models.Solver;
+import com.tools.DenseMatrix;
+import com.tools.SparseMatrix;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of one mini-batch SGD epoch over wide sparse (CSR) data: the sequential fit against
+ * the HOGWILD solver with plain and with atomic (compare-and-set) updates of the shared weights, on
+ * the given number of threads (all the available processors by default). The speedup of HOGWILD needs
+ * as many cores as threads, on a single core it only matches the sequential fit.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class HogwildBenchmark {
+    /* Number of samples (N) */
+    @Param({"100000"})
+    public int samples;
+
+    /* Number of features (d) */
+    @Param({"100000"})
+    public int features;
+
+    /* Worker threads of HOGWILD, 0 for every available processor */
+    @Param({"0"})
+    public int threads;
+
+    @Param({"SEQUENTIAL", "HOGWILD", "HOGWILD_ATOMIC"})
+    public String mode;
+
+    /* Non-zero values per sample */
+    static final int NNZ_PER_ROW = 32;
+    /* Rows per update */
+    static final int BATCH_SIZE = 16;
+
+    LogisticRegression model;
+    ForkJoinPool pool;
+    SparseMatrix X;
+    DenseMatrix y;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(BenchmarkData.SEED);
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(features);
+        y = new DenseMatrix(samples, 1);
+        for(int i = 0; i < samples; i++)
+        {
+            // Sorted distinct columns, labels separable on the sign of the values
+            double sum = 0;
+            int column = -1;
+            for(int k = 0; k < NNZ_PER_ROW; k++)
+            {
+                int remaining = NNZ_PER_ROW - k;
+                column += 1 + rand.nextInt(Math.max(1, (features - 1 - column) / remaining));
+                double value = rand.nextGaussian();
+                builder.add(column, value);
+                sum += value;
+            }
+            builder.endRow();
+            y.set(i, 0, sum > 0 ? 1 : 0);
+        }
+        X = builder.build();
+
+        model = new LogisticRegression(features, 0.1, 0);
+        model.setBatchSize(BATCH_SIZE);
+        model.setSeed(BenchmarkData.SEED);
+        if(!mode.equals("SEQUENTIAL"))
+        {
+            pool = new ForkJoinPool((threads > 0) ? threads : Runtime.getRuntime().availableProcessors());
+            model.setSolver(Solver.HOGWILD);
+            model.setPool(pool);
+            model.setAtomicUpdates(mode.equals("HOGWILD_ATOMIC"));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if(pool != null)
+            pool.shutdown();
+    }
+
+    @Benchmark
+    public double fitEpoch() throws Exception
+    {
+        model.fit(X, y, 1);
+        return model.get_loss();
+    }
+}
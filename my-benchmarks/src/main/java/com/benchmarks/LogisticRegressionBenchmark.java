@@ -0,0 +1,106 @@
+package com.benchmarks;
+
+import com.models.LogisticRegression;
+import com.tools.DenseMatrix;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the LogisticRegression model: a forward pass over the whole dataset (predict)
+ * and a full training epoch (fit with a single epoch), both from jagged double[][] inputs and from
+ * contiguous DenseMatrix inputs. fitEpochDense keeps fitting the same matrices, so it measures the
+ * steady state of the fused training kernel, whose gc.alloc.rate.norm should stay at ~0 B/op.
+ * fitEpochMiniBatch runs the same epoch as shuffled mini-batches of BATCH_SIZE samples, and
+ * fitEpochParallel computes the full-batch gradient on one thread per available processor.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class LogisticRegressionBenchmark {
+    /* Number of samples (N) */
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int samples;
+
+    /* Number of features (d) */
+    @Param({"2", "8", "32"})
+    public int features;
+
+    /* Mini-batch size of fitEpochMiniBatch */
+    static final int BATCH_SIZE = 256;
+
+    LogisticRegression model;
+    LogisticRegression miniBatchModel;
+    LogisticRegression parallelModel;
+    double[][] X;
+    double[][] y;
+    DenseMatrix denseX;
+    DenseMatrix denseY;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        X = BenchmarkData.features(samples, features);
+        y = BenchmarkData.labels(X);
+        denseX = DenseMatrix.of(X);
+        denseY = DenseMatrix.of(y);
+        model = new LogisticRegression(features, 0.01, 0);
+        miniBatchModel = new LogisticRegression(features, 0.01, 0);
+        miniBatchModel.setBatchSize(BATCH_SIZE);
+        miniBatchModel.setSeed(BenchmarkData.SEED);
+        parallelModel = new LogisticRegression(features, 0.01, 0);
+        parallelModel.setParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        parallelModel.close();
+    }
+
+    @Benchmark
+    public double[][] predict()
+    {
+        return model.predict(X);
+    }
+
+    @Benchmark
+    public double fitEpoch() throws Exception
+    {
+        model.fit(X, y, 1);
+        return model.get_loss();
+    }
+
+    @Benchmark
+    public DenseMatrix predictDense()
+    {
+        return model.predict(denseX);
+    }
+
+    @Benchmark
+    public double fitEpochDense() throws Exception
+    {
+        model.fit(denseX, denseY, 1);
+        return model.get_loss();
+    }
+
+    @Benchmark
+    public double fitEpochMiniBatch() throws Exception
+    {
+        miniBatchModel.fit(denseX, denseY, 1);
+        return miniBatchModel.get_loss();
+    }
+
+    @Benchmark
+    public double fitEpochParallel() throws Exception
+    {
+        parallelModel.fit(denseX, denseY, 1);
+        return parallelModel.get_loss();
+    }
+}
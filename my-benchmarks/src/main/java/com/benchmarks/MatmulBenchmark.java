@@ -0,0 +1,62 @@
+package com.benchmarks;
+
+import com.tools.AlgebraToolkit;
+import com.tools.DenseMatrix;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the general matrix product on square n x n operands, the shape used by wider
+ * models and batch scoring, as opposed to the X . W matrix-vector product of AlgebraToolkitBenchmark.
+ * matmulInto reuses a preallocated output.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class MatmulBenchmark {
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    AlgebraToolkit tools;
+    double[][] A;
+    double[][] B;
+    DenseMatrix denseA;
+    DenseMatrix denseB;
+    DenseMatrix denseC;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        tools = new AlgebraToolkit();
+        A = BenchmarkData.features(size, size);
+        B = tools.randomNormal(new int[]{size, size}, 0, 1);
+        denseA = DenseMatrix.of(A);
+        denseB = DenseMatrix.of(B);
+        denseC = new DenseMatrix(size, size);
+    }
+
+    @Benchmark
+    public double[][] matmul()
+    {
+        return tools.matmul(A, B);
+    }
+
+    @Benchmark
+    public DenseMatrix matmulDense()
+    {
+        return tools.matmul(denseA, denseB);
+    }
+
+    @Benchmark
+    public DenseMatrix matmulInto()
+    {
+        return tools.matmul(denseA, denseB, denseC);
+    }
+}
@@ -0,0 +1,78 @@
+package com.benchmarks;
+
+import com.models.LogisticRegression;
+import com.models.ScoringModel;
+import com.tools.DenseMatrix;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the immutable scoring snapshot against LogisticRegression.predict, over batches of
+ * the given number of rows. predictInto writes to a buffer owned by every benchmark thread and should
+ * report a gc.alloc.rate.norm of 0 B/op, score is the single-row call of a request handler. Run with
+ * -t to score from several threads, the snapshot is shared without any lock.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class ScoringModelBenchmark {
+    /* Rows per batch */
+    @Param({"1", "64", "4096"})
+    public int rows;
+
+    /* Number of features (d) */
+    @Param({"8", "32"})
+    public int features;
+
+    LogisticRegression model;
+    ScoringModel snapshot;
+    DenseMatrix batch;
+    double[] row;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        batch = DenseMatrix.of(BenchmarkData.features(rows, features));
+        row = batch.slice(0, 1).copy().data;
+        model = new LogisticRegression(features, 0.01, 0);
+        snapshot = model.snapshot();
+    }
+
+    /* Output buffer of every benchmark thread */
+    @State(Scope.Thread)
+    public static class Output {
+        double[] out;
+
+        @Setup(Level.Trial)
+        public void setUp(ScoringModelBenchmark benchmark)
+        {
+            out = new double[benchmark.rows];
+        }
+    }
+
+    @Benchmark
+    public DenseMatrix predict()
+    {
+        return model.predict(batch);
+    }
+
+    @Benchmark
+    public double[] predictInto(Output output)
+    {
+        snapshot.predictInto(batch.data, output.out);
+        return output.out;
+    }
+
+    @Benchmark
+    public double score()
+    {
+        return snapshot.score(row);
+    }
+}
@@ -0,0 +1,84 @@
+package com.benchmarks;
+
+import com.models.LogisticRegression;
+import com.models.Solver;
+import com.tools.DenseMatrix;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the wall-clock time to train a model from scratch with every solver, on badly
+ * conditioned data (feature scales from 1 to 100). NEWTON and LBFGS stop on the convergence tolerance,
+ * GRADIENT_DESCENT has no stopping rule and runs its whole MAX_EPOCHS budget, still short of the
+ * optimum the other two reach.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class SolverBenchmark {
+    /* Number of samples (N) */
+    @Param({"20000"})
+    public int samples;
+
+    /* Number of features (d) */
+    @Param({"8", "64"})
+    public int features;
+
+    @Param({"GRADIENT_DESCENT", "NEWTON", "LBFGS"})
+    public Solver solver;
+
+    /* Epochs of gradient descent, and maximum iterations of the other solvers */
+    static final int MAX_EPOCHS = 2000;
+
+    DenseMatrix X;
+    DenseMatrix y;
+    LogisticRegression model;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(BenchmarkData.SEED);
+        X = new DenseMatrix(samples, features);
+        y = new DenseMatrix(samples, 1);
+
+        double[] scale = new double[features], w = new double[features];
+        for(int j = 0; j < features; j++)
+        {
+            scale[j] = Math.pow(100, (double) j / Math.max(1, features - 1));
+            w[j] = rand.nextGaussian() / Math.sqrt(features);
+        }
+        for(int i = 0; i < samples; i++)
+        {
+            double z = 0.5;
+            for(int j = 0; j < features; j++)
+            {
+                double value = rand.nextGaussian();
+                X.set(i, j, value * scale[j]);
+                z += w[j] * value;
+            }
+            y.set(i, 0, rand.nextDouble() < 1 / (1 + Math.exp(-z)) ? 1 : 0);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void newModel()
+    {
+        model = new LogisticRegression(features, 0.01, 0);
+        model.setSolver(solver);
+    }
+
+    @Benchmark
+    public double fit() throws Exception
+    {
+        model.fit(X, y, MAX_EPOCHS);
+        return model.get_loss();
+    }
+}
@@ -0,0 +1,93 @@
+package com.benchmarks;
+
+import com.models.LogisticRegression;
+import com.tools.DenseMatrix;
+import com.tools.SparseMatrix;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks for the LogisticRegression model over wide sparse (CSR) data: NNZ_PER_ROW random
+ * non-zero values per sample out of the given number of features. predict, fitEpoch (full batch) and
+ * fitEpochMiniBatch should all scale with the number of non-zeros, not with the number of features.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx16g"})
+@State(Scope.Benchmark)
+public class SparseLogisticRegressionBenchmark {
+    /* Number of samples (N) */
+    @Param({"10000", "100000"})
+    public int samples;
+
+    /* Number of features (d) */
+    @Param({"1000", "100000", "1000000"})
+    public int features;
+
+    /* Non-zero values per sample */
+    static final int NNZ_PER_ROW = 32;
+    /* Mini-batch size of fitEpochMiniBatch */
+    static final int BATCH_SIZE = 256;
+
+    LogisticRegression model;
+    LogisticRegression miniBatchModel;
+    SparseMatrix X;
+    DenseMatrix y;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        Random rand = new Random(BenchmarkData.SEED);
+        SparseMatrix.Builder builder = new SparseMatrix.Builder(features);
+        y = new DenseMatrix(samples, 1);
+        for(int i = 0; i < samples; i++)
+        {
+            // Sorted distinct columns, labels separable on the sign of the values
+            double sum = 0;
+            int column = -1;
+            for(int k = 0; k < NNZ_PER_ROW; k++)
+            {
+                int remaining = NNZ_PER_ROW - k;
+                column += 1 + rand.nextInt(Math.max(1, (features - 1 - column) / remaining));
+                double value = rand.nextGaussian();
+                builder.add(column, value);
+                sum += value;
+            }
+            builder.endRow();
+            y.set(i, 0, sum > 0 ? 1 : 0);
+        }
+        X = builder.build();
+
+        model = new LogisticRegression(features, 0.01, 0);
+        miniBatchModel = new LogisticRegression(features, 0.01, 0);
+        miniBatchModel.setBatchSize(BATCH_SIZE);
+        miniBatchModel.setSeed(BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public DenseMatrix predict()
+    {
+        return model.predict(X);
+    }
+
+    @Benchmark
+    public double fitEpoch() throws Exception
+    {
+        model.fit(X, y, 1);
+        return model.get_loss();
+    }
+
+    @Benchmark
+    public double fitEpochMiniBatch() throws Exception
+    {
+        miniBatchModel.fit(X, y, 1);
+        return miniBatchModel.get_loss();
+    }
+}
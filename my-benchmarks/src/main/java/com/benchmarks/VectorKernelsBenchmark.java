@@ -0,0 +1,89 @@
+package com.benchmarks;
+
+import com.tools.FastSigmoid;
+import com.tools.Kernels;
+import com.tools.VectorKernels;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks comparing the scalar and the SIMD (Vector API) backends of the primitive kernels:
+ * dot product, axpy, sum and the in-place sigmoid, over arrays of the given length. fastSigmoid is the
+ * table-based approximation, the same code for both backends.
+ *
+ * @author Angel Cruz
+ * */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class VectorKernelsBenchmark {
+    @Param({"scalar", "simd"})
+    public String backend;
+
+    /* Length of the arrays */
+    @Param({"8", "64", "1024", "1000000"})
+    public int length;
+
+    VectorKernels kernels;
+    double[] a;
+    double[] b;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        kernels = backend.equals("simd") ? Kernels.simd() : Kernels.scalar();
+        if(kernels == null)
+            throw new IllegalStateException("The Vector API is not available in this JVM.");
+
+        Random rand = new Random(BenchmarkData.SEED);
+        a = new double[length];
+        b = new double[length];
+        for(int i = 0; i < length; i++)
+        {
+            a[i] = rand.nextGaussian();
+            b[i] = rand.nextGaussian();
+        }
+    }
+
+    @Benchmark
+    public double dot()
+    {
+        return kernels.dot(a, 0, b, 0, length);
+    }
+
+    @Benchmark
+    public double[] axpy()
+    {
+        kernels.axpy(1e-9, a, 0, b, 0, length);
+        return b;
+    }
+
+    @Benchmark
+    public double sum()
+    {
+        return kernels.sum(a, 0, length);
+    }
+
+    @Benchmark
+    public double[] sigmoid()
+    {
+        // Logits are rebuilt from a, so the values do not saturate across invocations
+        System.arraycopy(a, 0, b, 0, length);
+        kernels.sigmoid(b, 0, length);
+        return b;
+    }
+
+    @Benchmark
+    public double[] fastSigmoid()
+    {
+        System.arraycopy(a, 0, b, 0, length);
+        FastSigmoid.sigmoid(b, 0, length);
+        return b;
+    }
+}
@@ -16,16 +16,25 @@ import java.awt.event.ActionListener;
 import java.awt.Color;
 
 import java.io.File;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
+import com.tools.DenseMatrix;
 import com.tools.PipeLine;
+import com.tools.StandardizedDataset;
 import com.models.LogisticRegression;
+import com.models.ModelFile;
 
 /**
  * This class will be used to generate the main GUI, in order to define the layout of the widgets and
  * show the decision boundary of the Logistic Regression model.
  *
+ * The pipeline, the dataset loading and the training run on a background SwingWorker, which streams
+ * the loss and throughput of every epoch back to the Swing thread and can be cancelled at any time.
+ *
  * @author Angel Cruz
  *
  * */
@@ -34,6 +43,8 @@ public class GraphicInterface extends JFrame {
     final private JFrame mainFrame;
     final private JMenuBar  menuBar;
     final private JLabel instructionLabel;
+    final private JProgressBar progressBar;
+    final private JButton cancelBttn;
     private XYSeriesCollection dataset; // Chart points
 
     // Decision boundary / model
@@ -41,12 +52,32 @@ public class GraphicInterface extends JFrame {
     private ChartPanel decisionBoundaryPanel;
     private double model_loss;
     private XYSeries prediction_series;
+    private XYSeries boundary1_series;
+    private XYSeries boundary2_series;
+    private boolean modelWidgetsVisible = false;
+
+    // Background training
+    private TrainingWorker worker;
+    final static private int EPOCHS = 20;
+    // Minimum time between two redraws of the decision boundary while training
+    final static private long REFRESH_NANOS = 250_000_000L;
 
     // Data
     private String datasetURL;
     final private int numberFeatures = 2;
-    // Preprocessing Pipeline
-    PipeLine pipeline = new PipeLine();
+    // Decision boundary grid, one cell every GRID_CELL_PIXELS pixels of the chart
+    final static private int GRID_CELL_PIXELS = 5;
+    final static private int MIN_GRID_CELLS = 20;
+    // Minimum number of grid cells to score them in parallel
+    final static private int GRID_PARALLEL_THRESHOLD = 4096;
+    // Pool shared by every model trained by the GUI, so retraining never creates threads
+    final private ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    // Preprocessing Pipeline, the standardized data is only saved when -Dcom.gui.output=<prefix> is set
+    final static private String OUTPUT_PROPERTY = "com.gui.output";
+    PipeLine pipeline = new PipeLine(System.getProperty(OUTPUT_PROPERTY) == null ? null
+            : Paths.get(System.getProperty(OUTPUT_PROPERTY)));
+    // Last standardized dataset, kept in memory to retrain on it
+    private volatile StandardizedDataset standardized;
 
 
     /**
@@ -83,11 +114,7 @@ public class GraphicInterface extends JFrame {
                     File selectedFile = chooserWindow.getSelectedFile();
                     if (selectedFile != null) {
                         datasetURL = selectedFile.getAbsolutePath();
-                        try {
-                            displayModelWidgets();
-                        } catch (Exception ex) {
-                            throw new RuntimeException(ex);
-                        }
+                        startTraining(true);
                     } else {
                         System.err.println("Error: No file selected.");
                     }
@@ -97,27 +124,68 @@ public class GraphicInterface extends JFrame {
             }
         });
 
+        /* Define the training progress widgets, only visible while a training is running */
+        progressBar = new JProgressBar(0, EPOCHS);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+
+        cancelBttn = new JButton("Cancel");
+        cancelBttn.setVisible(false);
+        cancelBttn.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if(worker != null)
+                    worker.cancel(true);
+            }
+        });
+
+        JPanel progressPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        progressPanel.add(progressBar);
+        progressPanel.add(cancelBttn);
+
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(menuBar, BorderLayout.CENTER);
+        northPanel.add(progressPanel, BorderLayout.EAST);
+
         /* Define Instruction Label */
         instructionLabel = new JLabel("\tPlease select a dataset to train the Logistic Regression model...");
 
         /* Adding the widgets to the Main Frame */
-        mainFrame.add(menuBar, BorderLayout.NORTH);
+        mainFrame.add(northPanel, BorderLayout.NORTH);
         mainFrame.add(instructionLabel, BorderLayout.CENTER);
 
         mainFrame.setVisible(true);
     }
 
     /**
-     * Method to train the model in order to plot the decision boundary and display
-     * the text fields to make a prediction.
+     * Method to start a training run on a background worker. Any running training is cancelled first.
+     *
+     * @param executePipeLine true to run the preprocessing pipeline over the selected dataset first
      * */
-    private void displayModelWidgets() throws Exception {
-        /* Build Decision Boundary Chart */
-        boolean code= displayDecisionBoundary(true);
-        if(!code)
-        {
-            return;
-        }
+    private void startTraining(boolean executePipeLine)
+    {
+        if(worker != null && !worker.isDone())
+            worker.cancel(true);
+
+        // The grid resolution follows the size of the chart in pixels, read here on the Swing thread
+        Dimension panelSize = (decisionBoundaryPanel != null && decisionBoundaryPanel.getWidth() > 0)
+                ? decisionBoundaryPanel.getSize() : new Dimension(600, 500);
+
+        progressBar.setValue(0);
+        progressBar.setString("Preparing data...");
+        progressBar.setVisible(true);
+        cancelBttn.setVisible(true);
+        mainFrame.revalidate();
+
+        worker = new TrainingWorker(executePipeLine, panelSize);
+        worker.execute();
+    }
+
+    /**
+     * Method to display the text fields to make a prediction, once the first model has been trained.
+     * */
+    private void displayModelWidgets()
+    {
         mainFrame.remove(instructionLabel);
 
         /* SOUTH Prediction Panel */
@@ -167,112 +235,51 @@ public class GraphicInterface extends JFrame {
         retrain_model_bttn.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                try {
-                    // Build the decision boundary
-                    displayDecisionBoundary(false);
-                    // Add the decisionBoundary to the mainFrame
-                    mainFrame.add(decisionBoundaryPanel);
-                    mainFrame.revalidate();
-                    mainFrame.repaint();
-
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
-                }
+                // Retrain on the already preprocessed dataset
+                startTraining(false);
             }
         });
 
 
         /* Add widgets to the main frame */
-        mainFrame.add(decisionBoundaryPanel);
         mainFrame.add(predictionPanel, BorderLayout.SOUTH);
 
         predictionPanel.add(predictBtnn);
         predictionPanel.add(retrain_model_bttn);
 
         mainFrame.pack();
+        modelWidgetsVisible = true;
     }
 
     /**
-     * Method to build the decision boundary chart.
+     * Method to build the decision boundary chart with the samples of the dataset. The boundary series
+     * start empty and are filled by updateDecisionBoundary.
      * */
-    private boolean displayDecisionBoundary(boolean executePipeLine) throws Exception {
-        /*
-        *   Execute the PipeLine
-        * */
-        if(executePipeLine)
-        {
-            boolean code= PipeLine.extractAndTransform(datasetURL);
-
-            if(!code)
-                return false;
-        }
-        Map<String, List<List<Double>>> data_map = pipeline.loadDataset();
-        String[] header = pipeline.get_header();
-
-        // Get and cast X and y set.
-        double[][] X_samples = convertList2Array(data_map.get("X"));
-        double[][] y_samples = convertList2Array(data_map.get("y"));
-
-        /*
-        * Train Model
-        * */
-        classif = new LogisticRegression(2, 0.01, 0);
-        classif.fit(X_samples, y_samples, 20);
-        model_loss= classif.get_loss();
-        mainFrame.setTitle(String.format("Logistic Regression. (loss. %.2f)", model_loss));
-
-        /*
-        * Predicting Grid
-        * */
-        double[] min = {Double.MAX_VALUE,Double.MAX_VALUE};
-        double[] max = {Double.MIN_VALUE,Double.MIN_VALUE};
-        for(double[] num : X_samples) // Get the minimum and maximum per feature
-        {
-            // Compare feature 1
-            if(num[0] < min[0]) min[0] = num[0]; // min
-            if(num[0] > max[0]) max[0] = num[0]; // max
-            // Compare feature 2
-            if(num[1] < min[1]) min[1] = num[1]; // min
-            if(num[1] > max[1]) max[1] = num[1]; // max
-        }
-
-        XYSeries series1 = new XYSeries("Boundary 1");
-        XYSeries series2 = new XYSeries("Boundary 2");
+    private void displayDecisionBoundary(DenseMatrix X_samples, DenseMatrix y_samples, String[] header)
+    {
+        boundary1_series = new XYSeries("Boundary 1", false, true);
+        boundary2_series = new XYSeries("Boundary 2", false, true);
         XYSeries series3 = new XYSeries("Class 1");
         XYSeries series4 = new XYSeries("Class 2");
 
-        double offset= 0.3;
-        for(double x = min[0]-offset; x < max[0]+offset; x= x + 0.1)
-        {
-            for(double y = min[1]-offset; y < max[1]+offset; y= y + 0.1)
-            {
-                double[][] sample = {{x,y}};
-                double[][] prediction = classif.predict(sample);
-
-                // Determine the sample class
-                if(prediction[0][0] < 0.5) series1.add(x,y);
-                else series2.add(x,y);
-            }
-        }
-
         /*
         * Adding sample points
         * */
-        for(int i = 0; i < X_samples.length; i++)
+        for(int i = 0; i < X_samples.rows; i++)
         {
-            if(y_samples[i][0] == 0.0){
-                series3.add(X_samples[i][0],X_samples[i][1]);
+            if(y_samples.get(i, 0) == 0.0){
+                series3.add(X_samples.get(i, 0), X_samples.get(i, 1), false);
             }
             else{
-                series4.add(X_samples[i][0],X_samples[i][1]);
+                series4.add(X_samples.get(i, 0), X_samples.get(i, 1), false);
             }
         }
 
         dataset = new XYSeriesCollection();
         dataset.addSeries(series4);
         dataset.addSeries(series3);
-        dataset.addSeries(series1);
-        dataset.addSeries(series2);
+        dataset.addSeries(boundary1_series);
+        dataset.addSeries(boundary2_series);
 
         JFreeChart chart = ChartFactory.createXYLineChart(
                 "Decision Boundary",
@@ -321,37 +328,235 @@ public class GraphicInterface extends JFrame {
         // Add chart to the decision boundary.
         if(decisionBoundaryPanel != null)       // Remove old chart
             mainFrame.remove(decisionBoundaryPanel);
+        else
+            mainFrame.remove(instructionLabel);
 
         decisionBoundaryPanel = new ChartPanel(chart);
         decisionBoundaryPanel.setMouseWheelEnabled(false);
         decisionBoundaryPanel.setPreferredSize(new Dimension(600, 500));
 
-        return true;
+        mainFrame.add(decisionBoundaryPanel);
+        mainFrame.revalidate();
+        mainFrame.repaint();
     }
 
-    /***
-     * Method to cast an List<List<Double>> into a Double[][] list.
-     * @param list List to be cast to a double[][]
-     * @return array
-     */
-    private double[][] convertList2Array(List<List<Double>> list)
+    /**
+     * Method to redraw the decision boundary from the predictions of the grid cells.
+     * */
+    private void updateDecisionBoundary(DenseMatrix grid, DenseMatrix prediction)
     {
-        int size = list.size();
-        double[][] array = new double[size][2];
+        boundary1_series.clear();
+        boundary2_series.clear();
+        for(int cell = 0; cell < grid.rows; cell++)
+        {
+            // Determine the sample class, without notifying the chart on every point
+            if(prediction.get(cell, 0) < 0.5) boundary1_series.add(grid.get(cell, 0), grid.get(cell, 1), false);
+            else boundary2_series.add(grid.get(cell, 0), grid.get(cell, 1), false);
+        }
+        boundary1_series.fireSeriesChanged();
+        boundary2_series.fireSeriesChanged();
+    }
 
-        // Casting a List to an Array
-        for(int i = 0; i < size; i++)
+    /**
+     * Method to build the grid of points covering the range of the samples, as a single batch.
+     *
+     * @param X_samples Samples of the dataset
+     * @param panelSize Size of the chart in pixels
+     * */
+    private DenseMatrix buildGrid(DenseMatrix X_samples, Dimension panelSize)
+    {
+        double[] min = {Double.MAX_VALUE,Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE,-Double.MAX_VALUE};
+        for(int i = 0; i < X_samples.rows; i++) // Get the minimum and maximum per feature
+        {
+            for(int j = 0; j < numberFeatures; j++)
+            {
+                double num = X_samples.get(i, j);
+                if(num < min[j]) min[j] = num; // min
+                if(num > max[j]) max[j] = num; // max
+            }
+        }
+
+        int columns = Math.max(MIN_GRID_CELLS, panelSize.width / GRID_CELL_PIXELS);
+        int rows = Math.max(MIN_GRID_CELLS, panelSize.height / GRID_CELL_PIXELS);
+
+        double offset= 0.3;
+        double x0 = min[0] - offset, y0 = min[1] - offset;
+        double dx = (max[0] - min[0] + 2 * offset) / columns;
+        double dy = (max[1] - min[1] + 2 * offset) / rows;
+
+        DenseMatrix grid = new DenseMatrix(columns * rows, numberFeatures);
+        for(int i = 0, cell = 0; i < columns; i++)
+        {
+            for(int j = 0; j < rows; j++, cell++)
+            {
+                grid.set(cell, 0, x0 + i * dx);
+                grid.set(cell, 1, y0 + j * dy);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Progress of an epoch, published by the TrainingWorker to the Swing thread.
+     * */
+    private static final class TrainingProgress {
+        final int epoch;
+        final double loss;
+        final double rowsPerSecond;
+        // Predictions of the grid cells, null when the chart is not refreshed on this epoch
+        final DenseMatrix gridPrediction;
+
+        TrainingProgress(int epoch, double loss, double rowsPerSecond, DenseMatrix gridPrediction)
+        {
+            this.epoch = epoch;
+            this.loss = loss;
+            this.rowsPerSecond = rowsPerSecond;
+            this.gridPrediction = gridPrediction;
+        }
+    }
+
+    /**
+     * Background worker running the pipeline, the dataset loading and the training, so the Swing thread
+     * stays responsive. Cancelling the worker interrupts the training between two epochs.
+     * */
+    private final class TrainingWorker extends SwingWorker<Boolean, TrainingProgress> {
+        final boolean executePipeLine;
+        final Dimension panelSize;
+
+        // Written on the worker thread, read in process() / done() on the Swing thread
+        volatile DenseMatrix X_samples;
+        volatile DenseMatrix y_samples;
+        volatile String[] header;
+        volatile DenseMatrix grid;
+        volatile LogisticRegression model;
+        volatile DenseMatrix gridPrediction;
+        private long lastRefresh = 0;
+        private boolean chartReady = false;
+
+        TrainingWorker(boolean executePipeLine, Dimension panelSize)
+        {
+            this.executePipeLine = executePipeLine;
+            this.panelSize = panelSize;
+        }
+
+        @Override
+        protected Boolean doInBackground() throws Exception
+        {
+            /*
+            *   Execute the PipeLine, the standardized X and y sets come back in memory
+            * */
+            StandardizedDataset data = standardized;
+            if(executePipeLine || data == null)
+            {
+                data = pipeline.standardize(datasetURL);
+                standardized = data;
+            }
+            header = data.header;
+
+            X_samples = data.X;
+            y_samples = data.y;
+            grid = buildGrid(X_samples, panelSize);
+
+            /*
+            * Train Model, every epoch is streamed back to the Swing thread
+            * */
+            LogisticRegression classifier = new LogisticRegression(2, 0.01, 0);
+            classifier.setPool(pool);
+            classifier.setPredictParallelThreshold(GRID_PARALLEL_THRESHOLD);
+            classifier.addMetricsExporter(metrics -> {
+                // Redraw the boundary at most every REFRESH_NANOS, it costs a full pass over the grid
+                DenseMatrix prediction = null;
+                long now = System.nanoTime();
+                if(now - lastRefresh >= REFRESH_NANOS)
+                {
+                    prediction = classifier.predict(grid);
+                    lastRefresh = now;
+                }
+                publish(new TrainingProgress(metrics.epoch, metrics.loss, metrics.rowsPerSecond(), prediction));
+            });
+            classifier.fit(X_samples, y_samples, EPOCHS);
+
+            gridPrediction = classifier.predict(grid);
+            model = classifier;
+
+            // Save the model next to the standardized data, to score raw samples later without retraining
+            if(pipeline.getOutputPrefix() != null)
+                new ModelFile(classifier.snapshot(), data).write(Paths.get(pipeline.getOutputPrefix() + ModelFile.EXTENSION));
+            return true;
+        }
+
+        @Override
+        protected void process(List<TrainingProgress> chunks)
         {
-            List<Double> row = list.get(i);
-            if(row == null)
+            if(isCancelled())
+                return;
+
+            TrainingProgress last = chunks.get(chunks.size() - 1);
+            progressBar.setValue(last.epoch);
+            progressBar.setString(String.format("Epoch %d/%d", last.epoch, EPOCHS));
+            mainFrame.setTitle(String.format("Logistic Regression. Training... (epoch %d/%d, loss. %.4f, %.0f rows/s)",
+                    last.epoch, EPOCHS, last.loss, last.rowsPerSecond));
+
+            // Redraw the boundary with the most recent predictions of this batch of updates
+            for(int i = chunks.size() - 1; i >= 0; i--)
             {
-                System.err.println("Error: Row at index " + i);
-                continue;
+                if(chunks.get(i).gridPrediction != null)
+                {
+                    if(!chartReady)
+                    {
+                        displayDecisionBoundary(X_samples, y_samples, header);
+                        chartReady = true;
+                    }
+                    updateDecisionBoundary(grid, chunks.get(i).gridPrediction);
+                    break;
+                }
             }
-            for(int j = 0; j < row.size(); j++)
-                array[i][j] = row.get(j);
         }
 
-        return array;
+        @Override
+        protected void done()
+        {
+            // A newer run has already replaced this worker, leave the widgets to it
+            boolean current = (worker == this);
+            if(current)
+            {
+                progressBar.setVisible(false);
+                cancelBttn.setVisible(false);
+            }
+
+            try
+            {
+                if(!get())
+                    return;
+            }
+            catch (CancellationException e)
+            {
+                if(current)
+                    mainFrame.setTitle("Logistic Regression. (training cancelled)");
+                return;
+            }
+            catch (InterruptedException | ExecutionException e)
+            {
+                String message = "Training failed. " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                JOptionPane.showMessageDialog(mainFrame, message, "Training failed", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if(!current)
+                return;
+
+            classif = model;
+            model_loss= classif.get_loss();
+            mainFrame.setTitle(String.format("Logistic Regression. (loss. %.2f)", model_loss));
+
+            if(!chartReady)
+                displayDecisionBoundary(X_samples, y_samples, header);
+            updateDecisionBoundary(grid, gridPrediction);
+
+            if(!modelWidgetsVisible)
+                displayModelWidgets();
+            else
+                mainFrame.revalidate();
+        }
     }
 }
@@ -0,0 +1,118 @@
+package com.models;
+
+import com.tools.DenseMatrix;
+import com.tools.VectorKernels;
+
+/**
+ * GradientKernel over a DenseMatrix of samples (N x d) and a DenseMatrix of labels (N x 1).
+ *
+ * @author Angel Cruz
+ * */
+final class DenseGradientKernel extends GradientKernel {
+    final DenseMatrix X;
+    final DenseMatrix y;
+    // Number of leading rows of X and y covered by the kernel, all of them unless bound to fewer
+    private int rows;
+
+    DenseGradientKernel(DenseMatrix X, DenseMatrix y)
+    {
+        if(X.rows != y.rows)
+            throw new IllegalArgumentException("X has " + X.rows + " samples but y has " + y.rows + " labels.");
+        this.X = X;
+        this.y = y;
+        this.rows = X.rows;
+    }
+
+    /**
+     * Method to rebind the kernel to the first n rows of X and y, e.g. to the block a RowBlockSource
+     * just read into them, so a stream of blocks is trained on without a new kernel or view per block.
+     * */
+    DenseGradientKernel bind(int n)
+    {
+        if(n < 0 || n > X.rows)
+            throw new IndexOutOfBoundsException(n + " rows of a " + X.rows + " row block.");
+        this.rows = n;
+        return this;
+    }
+
+    @Override
+    boolean isBoundTo(Object X, DenseMatrix y)
+    {
+        return this.X == X && this.y == y;
+    }
+
+    @Override
+    int rows()
+    {
+        return rows;
+    }
+
+    @Override
+    int features()
+    {
+        return X.cols;
+    }
+
+    @Override
+    double accumulate(double[] w, double b, int[] index, int from, int to, double[] grad)
+    {
+        final int d = X.cols, xStride = X.stride, yStride = y.stride;
+        final double[] x = X.data, labels = y.data;
+        final VectorKernels kernels = LogisticRegression.KERNELS;
+        double loss = 0;
+
+        for(int k = from; k < to; k++)
+        {
+            int i = (index == null) ? k : index[k];
+            int row = X.offset + i * xStride;
+
+            // Forward propagation, weighted sum and sigmoid
+            double z = b + kernels.dot(x, row, w, 0, d);
+            // A single exp, of -|z| so it never overflows, gives both the sigmoid and the loss
+            double e = Math.exp(-Math.abs(z));
+            double y_pred = sigmoid(z, e);
+
+            // Residual and gradients, while the row is still in cache
+            double y_true = labels[y.offset + i * yStride];
+            double residual = y_pred - y_true;
+            kernels.axpy(residual, x, row, grad, 0, d);
+            grad[d] += residual;
+
+            loss += logLoss(y_true, z, e);
+        }
+        return loss * LOG10_E;
+    }
+
+    @Override
+    double accumulateHessian(double[] w, double b, double[] grad, double[] hessian)
+    {
+        final int d = X.cols, D = d + 1, xStride = X.stride, yStride = y.stride;
+        final double[] x = X.data, labels = y.data;
+        final VectorKernels kernels = LogisticRegression.KERNELS;
+        double loss = 0;
+
+        for(int i = 0; i < rows; i++)
+        {
+            int row = X.offset + i * xStride;
+
+            double z = b + kernels.dot(x, row, w, 0, d);
+            // A single exp, of -|z| so it never overflows, gives both the sigmoid and the loss
+            double e = Math.exp(-Math.abs(z));
+            double y_pred = sigmoid(z, e);
+            double y_true = labels[y.offset + i * yStride];
+            double residual = y_pred - y_true;
+            kernels.axpy(residual, x, row, grad, 0, d);
+            grad[d] += residual;
+
+            // Rank-one update of the lower triangle, weighted by the variance of the prediction
+            double s = y_pred * (1 - y_pred);
+            for(int a = 0; a < d; a++)
+                kernels.axpy(s * x[row + a], x, row, hessian, a * D, a + 1);
+            kernels.axpy(s, x, row, hessian, d * D, d);
+            hessian[d * D + d] += s;
+
+            loss += logLoss(y_true, z, e);
+        }
+        return loss * LOG10_E;
+    }
+}
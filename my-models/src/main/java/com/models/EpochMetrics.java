@@ -0,0 +1,85 @@
+package com.models;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measurements of one training epoch, handed to every MetricsExporter of the model at the end of the
+ * epoch. The allocated bytes come from the JVM's per-thread allocation counter and only cover the
+ * thread running fit, the allocations of the pool threads (setParallelism, HOGWILD) are not included.
+ *
+ * @author Angel Cruz
+ * */
+public final class EpochMetrics {
+    /* Epoch number, starting at 1 */
+    public final int epoch;
+    /* Mean loss of the epoch, and of the held-out rows (NaN without a validation split) */
+    public final double loss, validationLoss;
+    /* Largest component of the mean gradient of a full-batch update or solver iteration, NaN for mini-batches */
+    public final double gradientNorm;
+    /* Wall-clock time of the epoch, in nanoseconds */
+    public final long elapsedNanos;
+    /* Rows read to compute gradients, a second-order iteration may read the dataset more than once */
+    public final long rows;
+    /* Bytes allocated by the training thread during the epoch, -1 when the JVM does not measure it */
+    public final long allocatedBytes;
+
+    EpochMetrics(int epoch, double loss, double validationLoss, double gradientNorm, long elapsedNanos, long rows, long allocatedBytes)
+    {
+        this.epoch = epoch;
+        this.loss = loss;
+        this.validationLoss = validationLoss;
+        this.gradientNorm = gradientNorm;
+        this.elapsedNanos = elapsedNanos;
+        this.rows = rows;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @return Training throughput of the epoch, in rows per second.
+     * */
+    public double rowsPerSecond()
+    {
+        return rows / Math.max(elapsedNanos / 1e9, 1e-9);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "Epoch. " + epoch + "\tLoss. " + loss
+                + (Double.isNaN(validationLoss) ? "" : "\tValidation loss. " + validationLoss)
+                + (Double.isNaN(gradientNorm) ? "" : "\tGradient norm. " + gradientNorm)
+                + String.format("\tTime. %.3f ms\tRows/s. %.0f", elapsedNanos / 1e6, rowsPerSecond())
+                + (allocatedBytes < 0 ? "" : "\tAllocated. " + allocatedBytes + " B");
+    }
+
+    /* Allocation counter of the current thread, null when the JVM does not provide one */
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private static com.sun.management.ThreadMXBean allocationCounter()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+
+        com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        try
+        {
+            if(counter.isThreadAllocatedMemorySupported() && !counter.isThreadAllocatedMemoryEnabled())
+                counter.setThreadAllocatedMemoryEnabled(true);
+            return counter.isThreadAllocatedMemoryEnabled() ? counter : null;
+        }
+        catch (UnsupportedOperationException | SecurityException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return Bytes allocated so far by the current thread, -1 when not available.
+     * */
+    static long allocatedBytes()
+    {
+        return (THREADS == null) ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+}
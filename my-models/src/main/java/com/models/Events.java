@@ -0,0 +1,81 @@
+package com.models;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of the training and scoring phases. They cost close to nothing unless a
+ * recording enables them (java -XX:StartFlightRecording:filename=run.jfr ...), and then show where the
+ * time goes in production runs without attaching a profiler: open the file in JDK Mission Control or
+ * print it with jfr print --categories "Logistic Regression" run.jfr.
+ *
+ * @author Angel Cruz
+ * */
+final class Events {
+    static final String CATEGORY = "Logistic Regression";
+
+    private Events()
+    {}
+
+    @Name("com.models.Fit")
+    @Label("Fit")
+    @Category({CATEGORY, "Training"})
+    @Description("A call to LogisticRegression.fit, from the first to the last epoch")
+    static final class Fit extends Event {
+        @Label("Solver")
+        String solver;
+        @Label("Features")
+        int features;
+        @Label("Epochs")
+        int epochs;
+        @Label("Rows")
+        @Description("Rows read by all the epochs")
+        long rows;
+        @Label("Loss")
+        double loss;
+    }
+
+    @Name("com.models.Epoch")
+    @Label("Epoch")
+    @Category({CATEGORY, "Training"})
+    @Description("A training epoch of LogisticRegression.fit")
+    static final class Epoch extends Event {
+        @Label("Epoch")
+        int epoch;
+        @Label("Loss")
+        double loss;
+        @Label("Validation Loss")
+        double validationLoss;
+        @Label("Gradient Norm")
+        double gradientNorm;
+        @Label("Rows")
+        long rows;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("com.models.PartialFit")
+    @Label("Partial Fit")
+    @Category({CATEGORY, "Training"})
+    @Description("An incremental update of LogisticRegression.partial_fit")
+    static final class PartialFit extends Event {
+        @Label("Rows")
+        int rows;
+        @Label("Loss")
+        double loss;
+    }
+
+    @Name("com.models.Score")
+    @Label("Score")
+    @Category({CATEGORY, "Scoring"})
+    @Description("A batch of rows scored by LogisticRegression.predict or ScoringModel.predictInto")
+    static final class Score extends Event {
+        @Label("Rows")
+        int rows;
+    }
+}
@@ -0,0 +1,137 @@
+package com.models;
+
+import com.tools.DenseMatrix;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Fused training kernel. In a single pass over the rows of the dataset it computes the forward pass,
+ * the residual (y_pred - y_true), the gradient sums and the binary-crossentropy, without allocating
+ * anything, so a training step costs one read of X. The crossentropy is computed from the logit z, it is
+ * exact for saturated predictions and costs one exp and one log1p per row.
+ *
+ * @author Angel Cruz
+ * */
+abstract class GradientKernel {
+    /* Atomic access to the elements of a double[], for the lock-free updates of Hogwild */
+    static final VarHandle DOUBLES = MethodHandles.arrayElementVarHandle(double[].class);
+
+    /* The losses are summed in natural logarithm and reported in base 10, 1 / ln(10) */
+    static final double LOG10_E = 1 / Math.log(10);
+
+    /**
+     * @return true when this kernel already wraps the given dataset, so the model can keep reusing it.
+     * */
+    abstract boolean isBoundTo(Object X, DenseMatrix y);
+
+    /**
+     * @return Number of samples (N)
+     * */
+    abstract int rows();
+
+    /**
+     * @return Number of features (d)
+     * */
+    abstract int features();
+
+    /**
+     * Method to accumulate the gradients and the loss of the rows [from, to). When an index is given
+     * the rows index[from], ..., index[to - 1] are visited instead, which lets mini-batches walk a
+     * shuffled permutation without copying the samples.
+     *
+     * @param w     Weights of the model, d values
+     * @param b     Bias of the model
+     * @param index Row permutation, or null to visit the rows in order
+     * @param from  First position (inclusive)
+     * @param to    Last position (exclusive)
+     * @param grad Output, the residual * x sums are added to grad[0..d) and the residual sum to grad[d]
+     * @return Sum of the per-sample losses of the rows
+     * */
+    abstract double accumulate(double[] w, double b, int[] index, int from, int to, double[] grad);
+
+    /**
+     * Method to accumulate the gradients, the Hessian and the loss of every row, for the Newton solver.
+     * The Hessian of the crossentropy is X~^T . S . X~, X~ being X with a column of ones for the bias and
+     * S the diagonal of y_pred * (1 - y_pred).
+     *
+     * @param w       Weights of the model, d values
+     * @param b       Bias of the model
+     * @param grad    Output, same layout as accumulate
+     * @param hessian Output, (d + 1) x (d + 1) row-major, only the lower triangle is added to
+     * @return Sum of the per-sample losses of the rows
+     * */
+    abstract double accumulateHessian(double[] w, double b, double[] grad, double[] hessian);
+
+    /**
+     * Method to apply the update w -= step * grad[0..d) of the rows [from, to) and to clear grad[0..d]
+     * for the next step. Dense data touches every weight, kernels over sparse data only visit the
+     * columns their rows use.
+     * */
+    void update(double[] w, double step, int[] index, int from, int to, double[] grad)
+    {
+        int d = grad.length - 1;
+        LogisticRegression.KERNELS.axpy(-step, grad, 0, w, 0, d);
+        Arrays.fill(grad, 0);
+    }
+
+    /**
+     * Same as update, but every weight is changed with a compare-and-set loop, so concurrent updates of
+     * the same weight by other threads are never lost (Hogwild with atomic updates).
+     * */
+    void updateAtomic(double[] w, double step, int[] index, int from, int to, double[] grad)
+    {
+        int d = grad.length - 1;
+        for(int c = 0; c < d; c++)
+        {
+            if(grad[c] != 0)
+                addAtomic(w, c, -step * grad[c]);
+        }
+        Arrays.fill(grad, 0);
+    }
+
+    /* a[i] += delta, atomically */
+    static void addAtomic(double[] a, int i, double delta)
+    {
+        double current;
+        do
+        {
+            current = (double) DOUBLES.getVolatile(a, i);
+        }
+        while(!DOUBLES.weakCompareAndSet(a, i, current, current + delta));
+    }
+
+    /**
+     * Method to apply an optimizer to the parameters of the rows [from, to) and to clear grad[0..d],
+     * the same way as the plain update: dense data updates every weight, sparse data only the columns
+     * its rows use.
+     *
+     * @param scale Factor turning the gradient sums into mean gradients, 1 / (to - from) for a step
+     * */
+    void update(double[] w, Optimizer optimizer, double rate, double scale, int[] index, int from, int to, double[] grad)
+    {
+        int d = grad.length - 1;
+        for(int c = 0; c < d; c++)
+            w[c] += optimizer.delta(c, grad[c] * scale, rate);
+        Arrays.fill(grad, 0);
+    }
+
+    /**
+     * Sigmoid of the logit z given e = exp(-|z|), without overflow for any z.
+     * */
+    static double sigmoid(double z, double e)
+    {
+        return (z >= 0) ? 1 / (1 + e) : e / (1 + e);
+    }
+
+    /**
+     * Binary-crossentropy of a single sample from its logit z, in natural logarithm, given e = exp(-|z|).
+     * -y * log(p) - (1 - y) * log(1 - p) simplifies to max(z, 0) - y * z + log(1 + exp(-|z|)), which
+     * needs no epsilon to stay finite when the prediction saturates.
+     * */
+    static double logLoss(double y_true, double z, double e)
+    {
+        return Math.max(z, 0) - y_true * z + Math.log1p(e);
+    }
+}
@@ -0,0 +1,142 @@
+package com.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous lock-free SGD (Hogwild). The rows are split in one contiguous shard per worker, and
+ * during an epoch every worker runs mini-batch SGD over its own (shuffled) shard, reading and updating
+ * the shared weights without any lock or barrier. Workers only wait for each other at the end of the
+ * epoch. When every row touches few of the weights (wide sparse data), concurrent updates rarely
+ * collide and the epoch scales with the number of threads.
+ *
+ * Plain updates may overwrite a concurrent update of the same weight, which SGD tolerates. Atomic
+ * updates apply every change with a compare-and-set on the weight, nothing is lost, at the cost of a
+ * CAS per weight and step (dense data updates every weight at every step).
+ *
+ * @author Angel Cruz
+ * */
+final class HogwildSgd {
+    final GradientKernel data;
+    final ForkJoinPool pool;
+    final boolean atomic;
+    final int batch;
+    // Per worker: shard of rows (a permutation of them), gradient workspace and random generator
+    final int[][] shards;
+    final double[][] gradients;
+    final Random[] randoms;
+
+    /**
+     * @param rows    Rows to train on, null for every row of the dataset
+     * @param N       Number of rows to train on, the first N of rows
+     * @param pool    Pool running the workers, one per thread, or null to run a single worker on the caller
+     * @param batch   Rows per step of a worker
+     * @param seed    Seed of the shuffling of the shards
+     * */
+    HogwildSgd(GradientKernel data, int[] rows, int N, ForkJoinPool pool, boolean atomic, int batch, long seed)
+    {
+        this.data = data;
+        this.pool = pool;
+        this.atomic = atomic;
+        this.batch = Math.max(1, batch);
+
+        int workers = (pool == null) ? 1 : (int) Math.max(1, Math.min(pool.getParallelism(), N));
+        this.shards = new int[workers][];
+        this.gradients = new double[workers][data.features() + 1];
+        this.randoms = new Random[workers];
+        Random random = new Random(seed);
+        for(int k = 0; k < workers; k++)
+        {
+            int from = (int) ((long) N * k / workers), to = (int) ((long) N * (k + 1) / workers);
+            shards[k] = new int[to - from];
+            for(int i = from; i < to; i++)
+                shards[k][i - from] = (rows == null) ? i : rows[i];
+            randoms[k] = new Random(random.nextLong());
+        }
+    }
+
+    /**
+     * @return Number of steps performed by an epoch, all workers together.
+     * */
+    long steps()
+    {
+        long steps = 0;
+        for(int[] shard : shards)
+            steps += (shard.length + batch - 1) / batch;
+        return steps;
+    }
+
+    /**
+     * Method to run an epoch over every shard, updating w and bias[0] in place.
+     *
+     * @return Sum of the losses of the rows, each computed before its own step
+     * */
+    double epoch(double[] w, double[] bias, double rate, boolean shuffle) throws InterruptedException
+    {
+        if(shards.length == 1)
+            return worker(0, w, bias, rate, shuffle);
+
+        List<Callable<Double>> workers = new ArrayList<>(shards.length);
+        for(int k = 0; k < shards.length; k++)
+        {
+            int worker = k;
+            workers.add(() -> worker(worker, w, bias, rate, shuffle));
+        }
+
+        double loss = 0;
+        try
+        {
+            for(Future<Double> result : pool.invokeAll(workers))
+                loss += result.get();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("A Hogwild worker failed.", e.getCause());
+        }
+        return loss;
+    }
+
+    private double worker(int k, double[] w, double[] bias, double rate, boolean shuffle)
+    {
+        int[] shard = shards[k];
+        double[] grad = gradients[k];
+        int d = grad.length - 1;
+        if(shuffle)
+        {
+            Random random = randoms[k];
+            for(int i = shard.length - 1; i > 0; i--)
+            {
+                int j = random.nextInt(i + 1);
+                int aux = shard[i];
+                shard[i] = shard[j];
+                shard[j] = aux;
+            }
+        }
+
+        double loss = 0;
+        for(int from = 0; from < shard.length; from += batch)
+        {
+            int to = Math.min(from + batch, shard.length);
+            double step = rate / (to - from);
+
+            // Reads the shared weights as they are, other workers may be updating them
+            loss += data.accumulate(w, bias[0], shard, from, to, grad);
+            if(atomic)
+            {
+                GradientKernel.addAtomic(bias, 0, -step * grad[d]);
+                data.updateAtomic(w, step, shard, from, to, grad);
+            }
+            else
+            {
+                bias[0] -= step * grad[d];
+                data.update(w, step, shard, from, to, grad);
+            }
+        }
+        return loss;
+    }
+}
@@ -0,0 +1,119 @@
+package com.models;
+
+/**
+ * Limited-memory BFGS. The inverse Hessian is approximated with the last m pairs of parameter and
+ * gradient changes (two-loop recursion), so an iteration costs O(m * d) on top of the gradient, and
+ * the step along the direction is chosen with a backtracking line search.
+ *
+ * @author Angel Cruz
+ * */
+final class LbfgsSolver extends SecondOrderSolver {
+    final int m;
+    // Circular history of the parameter changes (s), the gradient changes (y) and 1 / (y . s)
+    final double[][] s, y;
+    final double[] rho, alpha;
+    int stored = 0, newest = -1;
+    final double[] direction, previous;
+
+    LbfgsSolver(Objective objective, int parameters, double tolerance, int history)
+    {
+        super(objective, parameters, tolerance);
+        this.m = Math.max(1, history);
+        this.s = new double[m][parameters];
+        this.y = new double[m][parameters];
+        this.rho = new double[m];
+        this.alpha = new double[m];
+        this.direction = new double[parameters];
+        this.previous = new double[parameters];
+    }
+
+    @Override
+    boolean iterate(double[] theta) throws Exception
+    {
+        if(!evaluated)
+        {
+            loss = objective.evaluate(theta, grad, null);
+            evaluated = true;
+        }
+        if(converged())
+            return true;
+
+        searchDirection();
+        System.arraycopy(theta, 0, previous, 0, n);
+        if(!lineSearch(theta, direction, null))
+        {
+            // The curvature estimate may be stale, retry once along the steepest descent
+            if(stored == 0)
+                return true;
+            stored = 0;
+            searchDirection();
+            if(!lineSearch(theta, direction, null))
+                return true;
+        }
+
+        // Store the new curvature pair, skipped when it would break the positive definiteness
+        int slot = (newest + 1) % m;
+        double ys = 0, yy = 0;
+        for(int i = 0; i < n; i++)
+        {
+            s[slot][i] = theta[i] - previous[i];
+            y[slot][i] = grad[i] - trial_grad[i];
+            ys += y[slot][i] * s[slot][i];
+            yy += y[slot][i] * y[slot][i];
+        }
+        if(ys > 1e-10 * yy)
+        {
+            rho[slot] = 1 / ys;
+            newest = slot;
+            stored = Math.min(stored + 1, m);
+        }
+
+        return converged();
+    }
+
+    /* Two-loop recursion, direction = -H . grad */
+    private void searchDirection()
+    {
+        for(int i = 0; i < n; i++)
+            direction[i] = -grad[i];
+
+        if(stored == 0)
+        {
+            // No curvature yet, steepest descent with a first step of length at most 1
+            double norm = 0;
+            for(int i = 0; i < n; i++)
+                norm += grad[i] * grad[i];
+            double scale = Math.min(1, 1 / Math.sqrt(norm));
+            for(int i = 0; i < n; i++)
+                direction[i] *= scale;
+            return;
+        }
+
+        for(int k = 0, j = newest; k < stored; k++, j = (j - 1 + m) % m)
+        {
+            alpha[j] = rho[j] * dot(s[j], direction);
+            axpy(-alpha[j], y[j], direction);
+        }
+
+        // Initial inverse Hessian, scaled by the newest pair
+        double gamma = 1 / (rho[newest] * dot(y[newest], y[newest]));
+        for(int i = 0; i < n; i++)
+            direction[i] *= gamma;
+
+        for(int k = 0, j = (newest - stored + 1 + m) % m; k < stored; k++, j = (j + 1) % m)
+        {
+            double beta = rho[j] * dot(y[j], direction);
+            axpy(alpha[j] - beta, s[j], direction);
+        }
+    }
+
+    private double dot(double[] a, double[] b)
+    {
+        return LogisticRegression.KERNELS.dot(a, 0, b, 0, n);
+    }
+
+    private void axpy(double alpha, double[] x, double[] y)
+    {
+        LogisticRegression.KERNELS.axpy(alpha, x, 0, y, 0, n);
+    }
+}
@@ -0,0 +1,58 @@
+package com.models;
+
+/**
+ * Learning-rate schedule used by LogisticRegression.fit. Given the base learning rate (eta), the
+ * current epoch (starting at 0) and the number of parameter updates already performed, it returns
+ * the learning rate of the next update.
+ *
+ * @author Angel Cruz
+ * */
+@FunctionalInterface
+public interface LearningRateSchedule {
+    double rate(double eta, int epoch, long step);
+
+    /**
+     * Keep the base learning rate during the whole training.
+     * */
+    static LearningRateSchedule constant()
+    {
+        return (eta, epoch, step) -> eta;
+    }
+
+    /**
+     * Multiply the learning rate by factor every given number of epochs.
+     *
+     * @param factor Decay factor, in (0, 1]
+     * @param every  Number of epochs between two decays
+     * */
+    static LearningRateSchedule stepDecay(double factor, int every)
+    {
+        if(factor <= 0 || every <= 0)
+            throw new IllegalArgumentException("Invalid step decay. factor " + factor + ", every " + every + ".");
+        return (eta, epoch, step) -> eta * Math.pow(factor, epoch / every);
+    }
+
+    /**
+     * Exponential decay per epoch, eta * gamma^epoch.
+     *
+     * @param gamma Decay factor, in (0, 1]
+     * */
+    static LearningRateSchedule exponential(double gamma)
+    {
+        if(gamma <= 0)
+            throw new IllegalArgumentException("Invalid exponential decay. gamma " + gamma + ".");
+        return (eta, epoch, step) -> eta * Math.pow(gamma, epoch);
+    }
+
+    /**
+     * Inverse-time decay per update, eta / (1 + decay * step), the classic SGD schedule.
+     *
+     * @param decay Decay rate, >= 0
+     * */
+    static LearningRateSchedule inverseTime(double decay)
+    {
+        if(decay < 0)
+            throw new IllegalArgumentException("Invalid inverse time decay. decay " + decay + ".");
+        return (eta, epoch, step) -> eta / (1 + decay * step);
+    }
+}
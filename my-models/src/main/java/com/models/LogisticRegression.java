@@ -1,131 +1,1075 @@
-package com.models;
-
-import com.tools.AlgebraToolkit;
-
-public class LogisticRegression {
-    // Initialize an attribute to define the input dimension
-    int input_dim;
-    // Initialize an attribute to store the learning rate
-    double eta;
-    // Initialize an attribute to store the loss
-    double loss = 0;
-    // Initialize an attribute to store the gradients
-    double[][] dW;
-    double[][] dB;
-
-    // Define model's parameters (weights & bias)
-    double[][] weights;
-    double[][] bias = new double[1][1];
-
-    // Verbose
-    int verbose= 1;
-
-    // Create an objecto of the algebra_toolkit class to perform algebraic operations
-    AlgebraToolkit tools = new AlgebraToolkit();
-
-    /***
-     * Main constructor for the LogisticRegression class
-     * @param input_dim Input dimension or number of features in the dataset.
-     * @param learning_rate Learning rate.
-     * @param verbose   1 to print loss else 0.
-     */
-    public LogisticRegression(int input_dim, double learning_rate, int verbose)
-    {
-        // Store the input dimension of the dataset
-        this.input_dim = input_dim;
-        // Define learning rate
-        this.eta = learning_rate;
-
-        // Initialize the model's weights from a normal distribution and the bias with zero.
-        int[] weights_shape = {this.input_dim, 1};
-        this.weights = tools.randomNormal(weights_shape, 0, 1);
-        this.bias[0][0] = 0;
-
-        this.verbose = verbose;
-    }
-
-    public double[][] sigmoid(double[][] X)
-    {
-        // Compute the sigmoid function for each sample in X
-        for(int i = 0; i < X.length; i++)
-            X[i][0] = 1 / (1 + Math.exp(-X[i][0]));
-
-        return X;
-    }
-
-    public double[][] predict(double[][] X)
-    {
-        // Define a 2D-array to store the model's output computed
-        double[][] Z = tools.sum(tools.matmul(X, this.weights), bias);
-        return sigmoid(Z);
-    }
-
-    private void compute_gradients(double[][] y_true, double[][] y_pred, double[][] X) throws Exception {
-        // Compute the difference between the true labels and the predicted labels
-        double[][] diff = tools.subtract(y_pred, y_true);
-
-        // Compute the gradients of the weights based on the loss
-        double[][] dW = tools.mult(diff, X);
-        dW = tools.reduce_mean(dW);
-        this.dW = tools.transpose(dW);
-
-        // Compute gradients of the bias based on the loss
-        this.dB = tools.reduce_mean(diff);
-    }
-
-    private void updateParameters() throws Exception {
-        // Define the learning rate as 2D-array to perform the multiplication between the gradients and the learnin rate
-        double[][] eta_array = {{this.eta}};
-
-        // Update the gradients of the weights
-        double[][] aux = tools.mult(eta_array, this.dW);
-        this.weights = tools.subtract(this.weights, aux);
-        // Update the gradients of the bias
-        this.bias = tools.subtract(this.bias, tools.mult(eta_array, this.dB));
-    }
-
-    private void binary_crossentropy(double[][] y_true, double[][] y_pred)
-    {
-        // Reset the loss to zero
-        this.loss = 0;
-        // Small value to avoid logarithm of zero during loss calculation
-        double eps = 1e-8;
-
-        // Compute the binary-crossentropy for each sample
-        for(int i = 0; i < y_true.length; i++)
-        {
-            this.loss += y_true[i][0] * Math.log10(y_pred[i][0] + eps) + (1 - y_true[i][0]) * Math.log10(1 - y_pred[i][0] + eps);
-        }
-        // Divide the loss by the number of samples
-        this.loss /= -y_true.length;
-    }
-
-    private void train_step(double[][] X, double[][] y) throws Exception {
-
-        // Store the predicted values for input X (forward propagation)
-        double[][] prediction = predict(X);
-        // Compute the gradients with respect to the weights and bias
-        compute_gradients(y, prediction, X);
-        // Update the model's parameters using the calculated gradients
-        updateParameters();
-        // Compute the loss between the true labels and the predicted labels
-        binary_crossentropy(y, prediction);
-    }
-
-    public void fit(double[][] X, double[][] y, int epochs) throws Exception {
-        for(int i = 0; i < epochs; i++)
-        {
-            // Perform a train step to tweak the model's parameters
-            train_step(X, y);
-
-            // Display the current epoch number and the computed loss
-            if(verbose == 1)
-                System.out.printf("Epoch. " + (i + 1) + "\tLoss. " + this.loss + "\n");
-        }
-    }
-
-    public double get_loss()
-    {
-        return this.loss;
-    }
-}
+package com.models;
+
+import com.tools.AlgebraToolkit;
+import com.tools.DenseMatrix;
+import com.tools.FastSigmoid;
+import com.tools.Kernels;
+import com.tools.RowBlockSource;
+import com.tools.SparseMatrix;
+import com.tools.VectorKernels;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class LogisticRegression implements AutoCloseable {
+    // Initialize an attribute to define the input dimension
+    int input_dim;
+    // Initialize an attribute to store the learning rate
+    double eta;
+    // Initialize an attribute to store the loss
+    double loss = 0;
+    // Initialize a workspace to accumulate the gradients, d weights followed by the bias. It is all
+    // zeros between two steps, the kernel clears the entries it used when it applies an update
+    double[] gradients;
+    // Workspace of the gradients of the held-out rows, only their loss is used
+    double[] validation_gradients;
+    // Fused training kernel bound to the dataset being fitted
+    GradientKernel kernel;
+
+    // Mini-batch configuration, a batch size <= 0 means full-batch gradient descent
+    int batch_size = 0;
+    boolean shuffle = true;
+    LearningRateSchedule schedule = LearningRateSchedule.constant();
+    Random random = new Random();
+    // Row permutation walked by the mini-batches, shuffled in place every epoch
+    int[] permutation;
+    // Number of parameter updates performed by the current fit call
+    long steps = 0;
+
+    // Update rule of gradient descent
+    Optimizer optimizer = Optimizer.sgd();
+
+    // Early stopping, training stops after patience epochs without an improvement of the monitored loss
+    // larger than min_delta, and the best parameters are restored. Disabled when patience <= 0
+    int patience = 0;
+    double min_delta = 0;
+    // Fraction of the rows held out to monitor the loss, 0 to monitor the training loss
+    double validation_split = 0;
+    // Number of rows trained on, the held-out rows are permutation[train_rows, N)
+    int train_rows;
+    // Loss of the held-out rows after the last epoch (NaN without a validation split), and the largest
+    // component of the mean gradient of the last full-batch update or solver iteration (NaN for mini-batches)
+    double validation_loss = Double.NaN;
+    double gradient_norm = Double.NaN;
+
+    // Optimization algorithm, and the convergence tolerance and history size of the second-order solvers
+    Solver solver = Solver.GRADIENT_DESCENT;
+    double tolerance = 1e-6;
+    int history = 10;
+
+    // Data-parallel gradient computation, null to train on the calling thread
+    ParallelGradient parallel;
+    // Whether the pool of parallel was created by setParallelism, and must be shut down by the model,
+    // or was passed to setPool and belongs to the caller
+    boolean owns_pool = false;
+    // Compare-and-set updates of the shared weights in Hogwild, plain (racy) writes otherwise
+    boolean atomic_updates = false;
+    // Minimum number of rows per update, and per predict call, to use the parallel path
+    int parallel_threshold = 1 << 15;
+    int predict_parallel_threshold = 1 << 15;
+
+    // Define model's parameters (weights & bias)
+    DenseMatrix weights;
+    DenseMatrix bias = new DenseMatrix(1, 1);
+
+    // Approximate sigmoid in predict, see FastSigmoid
+    boolean fast_sigmoid = false;
+
+    // Immutable copy of the parameters for concurrent scoring, replaced after every epoch
+    volatile ScoringModel snapshot;
+    long version = 0;
+
+    // Verbose, 1 to log the metrics of every epoch at FINE level
+    int verbose= 1;
+    static final Logger LOGGER = Logger.getLogger(LogisticRegression.class.getName());
+    static final MetricsExporter VERBOSE = MetricsExporter.logger(LOGGER, Level.FINE);
+    // Listener notified at the end of every epoch, may be null
+    TrainingListener listener;
+    // Destinations of the metrics of every epoch
+    final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+    // Rows read to compute gradients by the current epoch
+    long epoch_rows = 0;
+
+    // Create an objecto of the algebra_toolkit class to perform algebraic operations
+    AlgebraToolkit tools = new AlgebraToolkit();
+    // Scalar or SIMD backend of the primitive loops, picked at startup
+    static final VectorKernels KERNELS = Kernels.get();
+
+    /***
+     * Main constructor for the LogisticRegression class
+     * @param input_dim Input dimension or number of features in the dataset.
+     * @param learning_rate Learning rate.
+     * @param verbose   1 to log the metrics of every epoch (java.util.logging, FINE level) else 0.
+     */
+    public LogisticRegression(int input_dim, double learning_rate, int verbose)
+    {
+        // Store the input dimension of the dataset
+        this.input_dim = input_dim;
+        // Define learning rate
+        this.eta = learning_rate;
+
+        // Initialize the model's weights from a normal distribution and the bias with zero.
+        int[] weights_shape = {this.input_dim, 1};
+        this.weights = DenseMatrix.of(tools.randomNormal(weights_shape, 0, 1));
+        this.bias.set(0, 0, 0);
+        this.gradients = new double[this.input_dim + 1];
+        this.validation_gradients = new double[this.input_dim + 1];
+
+        this.verbose = verbose;
+        publish();
+    }
+
+    /***
+     * Constructor to continue from the parameters of a trained model, e.g. one loaded with ModelFile.read.
+     * @param model Parameters to start from, the number of features is taken from it.
+     * @param learning_rate Learning rate.
+     * @param verbose   1 to log the metrics of every epoch (java.util.logging, FINE level) else 0.
+     */
+    public LogisticRegression(ScoringModel model, double learning_rate, int verbose)
+    {
+        this(model.features(), learning_rate, verbose);
+        System.arraycopy(model.weights(), 0, this.weights.data, 0, this.input_dim);
+        this.bias.set(0, 0, model.bias());
+        this.fast_sigmoid = model.isFastSigmoid();
+        this.version = model.version();
+        publish();
+    }
+
+    /* Freeze the current parameters into a new snapshot, a single volatile write publishes it */
+    private void publish()
+    {
+        this.snapshot = new ScoringModel(this.weights.data, this.bias.data[0], this.fast_sigmoid, ++this.version);
+    }
+
+    /***
+     * Method to get an immutable copy of the parameters, to score from any number of threads while the
+     * model keeps training. A new snapshot is published after every epoch and when fit returns, a
+     * snapshot that was already taken never changes.
+     * @return Latest published snapshot.
+     */
+    public ScoringModel snapshot()
+    {
+        return this.snapshot;
+    }
+
+    public double[][] sigmoid(double[][] X)
+    {
+        // Compute the sigmoid function for each sample in X
+        for(int i = 0; i < X.length; i++)
+            X[i][0] = 1 / (1 + Math.exp(-X[i][0]));
+
+        return X;
+    }
+
+    public DenseMatrix sigmoid(DenseMatrix X)
+    {
+        // Contiguous column of logits, vectorized sigmoid
+        if(X.cols == 1 && (X.stride == 1 || X.rows <= 1))
+        {
+            KERNELS.sigmoid(X.data, X.offset, X.rows);
+            return X;
+        }
+
+        // Compute the sigmoid function for each sample in X
+        for(int i = 0; i < X.rows; i++)
+        {
+            int idx = X.index(i, 0);
+            X.data[idx] = 1 / (1 + Math.exp(-X.data[idx]));
+        }
+        return X;
+    }
+
+    public double[][] predict(double[][] X)
+    {
+        return predict(DenseMatrix.of(X)).toArray();
+    }
+
+    public DenseMatrix predict(DenseMatrix X)
+    {
+        Events.Score event = new Events.Score();
+        event.begin();
+
+        // Define a matrix to store the model's output computed
+        DenseMatrix Z = new DenseMatrix(X.rows, 1);
+
+        // Large batches are scored in row chunks on the training pool, each chunk writes its own slice of Z
+        if(this.parallel != null && X.rows >= this.predict_parallel_threshold)
+            this.parallel.forEachChunk(X.rows, (from, to) -> predict(X.slice(from, to), Z.slice(from, to)));
+        else
+            predict(X, Z);
+
+        event.rows = X.rows;
+        event.commit();
+        return Z;
+    }
+
+    private void predict(DenseMatrix X, DenseMatrix Z)
+    {
+        // Weighted sum plus bias, then the sigmoid, all in place in Z
+        activate(tools.sum(tools.matmul(X, this.weights, Z), bias));
+    }
+
+    /* Sigmoid of the logits of predict, exact or approximate */
+    private void activate(DenseMatrix Z)
+    {
+        if(this.fast_sigmoid)
+            FastSigmoid.sigmoid(Z.data, Z.offset, Z.rows);
+        else
+            sigmoid(Z);
+    }
+
+    /***
+     * Method to predict sparse samples, in O(nnz) instead of O(N * d).
+     * @param X Samples (N x d), CSR.
+     */
+    public DenseMatrix predict(SparseMatrix X)
+    {
+        Events.Score event = new Events.Score();
+        event.begin();
+
+        // Define a matrix to store the model's output computed
+        DenseMatrix Z = new DenseMatrix(X.rows, 1);
+
+        if(this.parallel != null && X.rows >= this.predict_parallel_threshold)
+            this.parallel.forEachChunk(X.rows, (from, to) -> predict(X.slice(from, to), Z.slice(from, to)));
+        else
+            predict(X, Z);
+
+        event.rows = X.rows;
+        event.commit();
+        return Z;
+    }
+
+    private void predict(SparseMatrix X, DenseMatrix Z)
+    {
+        // Sparse weighted sum plus bias, then the sigmoid, all in place in Z
+        activate(tools.sum(tools.matmul(X, this.weights, Z), bias));
+    }
+
+    private void updateParameters(GradientKernel data, int[] index, int from, int to, double rate, long N)
+    {
+        if(this.optimizer == Optimizer.sgd())
+        {
+            // Update the weights and the bias in place with the accumulated gradients times step (eta / N)
+            double step = rate / N;
+            this.bias.data[0] -= step * this.gradients[this.input_dim];
+
+            // The kernel applies the weights update and clears the workspace for the next step
+            data.update(this.weights.data, step, index, from, to, this.gradients);
+            return;
+        }
+
+        // Adaptive update rule, fed with the mean gradients
+        this.optimizer.begin(this.steps);
+        this.bias.data[0] += this.optimizer.delta(this.input_dim, this.gradients[this.input_dim] / N, rate);
+        data.update(this.weights.data, this.optimizer, rate, 1.0 / N, index, from, to, this.gradients);
+    }
+
+    /* Largest component of the mean gradient accumulated over N rows */
+    private double gradientNorm(long N)
+    {
+        double max = 0;
+        for(int i = 0; i <= this.input_dim; i++)
+            max = Math.max(max, Math.abs(this.gradients[i]));
+        return max / N;
+    }
+
+    private double accumulate(GradientKernel data, int[] index, int from, int to)
+    {
+        return accumulate(data, this.weights.data, this.bias.data[0], index, from, to, this.gradients);
+    }
+
+    private double accumulate(GradientKernel data, double[] w, double b, int[] index, int from, int to, double[] grad)
+    {
+        // Forward propagation, gradients and loss in a single pass over the rows, reusing the workspace
+        if(this.parallel != null && to - from >= this.parallel_threshold)
+            return this.parallel.accumulate(data, w, b, index, from, to, grad);
+        else
+            return data.accumulate(w, b, index, from, to, grad);
+    }
+
+    /* Sum of the losses of the rows of a kernel, plus the gradients and the Hessian when not null */
+    private double accumulate(GradientKernel data, double[] theta, double[] grad, double[] hessian)
+    {
+        if(hessian != null)
+            return data.accumulateHessian(theta, theta[this.input_dim], grad, hessian);
+        return accumulate(data, theta, theta[this.input_dim], null, 0, data.rows(), grad);
+    }
+
+    /**
+     * Mean loss over the whole dataset for the second-order solvers. The kernels report the sum of the
+     * crossentropies in base 10, the solvers work with the natural logarithm whose derivative is the
+     * gradient the kernels compute.
+     * */
+    private static double mean(double sum_loss, long N, double[] grad, double[] hessian)
+    {
+        for(int i = 0; i < grad.length; i++)
+            grad[i] /= N;
+        if(hessian != null)
+            for(int i = 0; i < hessian.length; i++)
+                hessian[i] /= N;
+        return sum_loss * Math.log(10) / N;
+    }
+
+    private double train_step(GradientKernel data, int[] index, int from, int to, double eta)
+    {
+        double sum_loss = accumulate(data, index, from, to);
+
+        // Update the model's parameters using the calculated gradients
+        updateParameters(data, index, from, to, eta, to - from);
+        this.steps++;
+
+        // Sum of the binary-crossentropy of the predictions made before the update
+        return sum_loss;
+    }
+
+    /**
+     * Method to prepare the row permutation for a fit call. With a validation split a random subset of
+     * the rows is held out at the end of the permutation, and both parts are sorted so that full-batch
+     * epochs still read the rows in storage order.
+     * */
+    private void split_rows(int N)
+    {
+        if(this.permutation == null || this.permutation.length != N)
+            this.permutation = new int[N];
+        for(int i = 0; i < N; i++)
+            this.permutation[i] = i;
+
+        this.train_rows = N;
+        this.validation_loss = Double.NaN;
+        if(this.validation_split > 0)
+        {
+            this.train_rows = N - (int) Math.round(N * this.validation_split);
+            if(this.train_rows <= 0 || this.train_rows >= N)
+                throw new IllegalArgumentException("A validation split of " + this.validation_split + " leaves no rows in one of the "
+                        + N + " rows subsets.");
+            shuffle(this.permutation, N);
+            Arrays.sort(this.permutation, 0, this.train_rows);
+            Arrays.sort(this.permutation, this.train_rows, N);
+        }
+    }
+
+    private boolean train_epoch(GradientKernel data, int epoch) throws InterruptedException
+    {
+        int N = this.train_rows;
+        boolean converged;
+
+        // Full-batch gradient descent, a single update per epoch
+        if(this.batch_size <= 0 || this.batch_size >= N)
+        {
+            int[] index = (N == data.rows()) ? null : this.permutation;
+            double sum_loss = accumulate(data, index, 0, N);
+            this.gradient_norm = gradientNorm(N);
+
+            updateParameters(data, index, 0, N, schedule.rate(this.eta, epoch, this.steps), N);
+            this.steps++;
+            this.epoch_rows += N;
+            this.loss = sum_loss / N;
+            converged = this.gradient_norm <= this.tolerance;
+        }
+        else
+        {
+            // Mini-batch gradient descent over a (shuffled) permutation of the rows, the samples are never copied
+            if(this.shuffle)
+                shuffle(this.permutation, N);
+
+            double sum_loss = 0;
+            for(int from = 0; from < N; from += this.batch_size)
+            {
+                checkInterrupted();
+                int to = Math.min(from + this.batch_size, N);
+                sum_loss += train_step(data, this.permutation, from, to, schedule.rate(this.eta, epoch, this.steps));
+            }
+            this.epoch_rows += N;
+            this.loss = sum_loss / N;
+            this.gradient_norm = Double.NaN;
+            converged = false;
+        }
+
+        validate(data, N);
+        return converged;
+    }
+
+    /**
+     * Hogwild epoch, the workers update the parameters in place over their own shards of the training rows.
+     * */
+    private boolean hogwild_epoch(GradientKernel data, HogwildSgd hogwild, int epoch) throws InterruptedException
+    {
+        int N = this.train_rows;
+        double sum_loss = hogwild.epoch(this.weights.data, this.bias.data, schedule.rate(this.eta, epoch, this.steps), this.shuffle);
+        this.steps += hogwild.steps();
+        this.epoch_rows += N;
+        this.loss = sum_loss / N;
+        this.gradient_norm = Double.NaN;
+
+        validate(data, N);
+        return false;
+    }
+
+    /* Loss of the held-out rows, the gradients go to a reused workspace and are ignored */
+    private void validate(GradientKernel data, int N)
+    {
+        if(N < data.rows())
+        {
+            Arrays.fill(this.validation_gradients, 0);
+            this.validation_loss = accumulate(data, this.weights.data, this.bias.data[0], this.permutation, N, data.rows(),
+                    this.validation_gradients) / (data.rows() - N);
+        }
+    }
+
+    /* Training can be cancelled by interrupting the thread running fit */
+    private static void checkInterrupted() throws InterruptedException
+    {
+        if(Thread.interrupted())
+            throw new InterruptedException("Training interrupted.");
+    }
+
+    /**
+     * Out-of-core epoch, the rows are pulled from the source block by block into the X and y buffers.
+     * Full-batch gradient descent accumulates the gradients of every block and updates once at the end,
+     * mini-batches are (shuffled and) formed inside every block.
+     * */
+    private boolean stream_epoch(RowBlockSource data, DenseMatrix X, DenseMatrix y, int epoch) throws Exception
+    {
+        boolean full_batch = this.batch_size <= 0;
+        if(this.permutation == null || this.permutation.length != X.rows)
+            this.permutation = new int[X.rows];
+
+        data.reset();
+        // One kernel over the block buffers, bound to the rows of every block as it is read
+        DenseGradientKernel block = new DenseGradientKernel(X, y);
+        long N = 0;
+        double sum_loss = 0;
+        int n;
+        while((n = data.next(X, y)) > 0)
+        {
+            checkInterrupted();
+            block.bind(n);
+            N += n;
+            this.epoch_rows += n;
+
+            if(full_batch)
+            {
+                sum_loss += accumulate(block, null, 0, n);
+                continue;
+            }
+
+            for(int i = 0; i < n; i++)
+                this.permutation[i] = i;
+            if(this.shuffle)
+                shuffle(this.permutation, n);
+
+            for(int from = 0; from < n; from += this.batch_size)
+            {
+                checkInterrupted();
+                int to = Math.min(from + this.batch_size, n);
+                sum_loss += train_step(block, this.permutation, from, to, schedule.rate(this.eta, epoch, this.steps));
+            }
+        }
+
+        boolean converged = false;
+        this.gradient_norm = Double.NaN;
+        if(full_batch && N > 0)
+        {
+            this.gradient_norm = gradientNorm(N);
+            converged = this.gradient_norm <= this.tolerance;
+            updateParameters(block, null, 0, 0, schedule.rate(this.eta, epoch, this.steps), N);
+            this.steps++;
+        }
+        this.loss = (N > 0) ? sum_loss / N : 0;
+        return converged;
+    }
+
+    /* Objective of an in-memory dataset */
+    private Objective objective(GradientKernel data)
+    {
+        return (theta, grad, hessian) -> {
+            Arrays.fill(grad, 0);
+            if(hessian != null)
+                Arrays.fill(hessian, 0);
+            this.epoch_rows += data.rows();
+            return mean(accumulate(data, theta, grad, hessian), data.rows(), grad, hessian);
+        };
+    }
+
+    /* Objective of an out-of-core dataset, every evaluation is a pass over the blocks */
+    private Objective objective(RowBlockSource data, DenseMatrix X, DenseMatrix y)
+    {
+        DenseGradientKernel block = new DenseGradientKernel(X, y);
+        return (theta, grad, hessian) -> {
+            Arrays.fill(grad, 0);
+            if(hessian != null)
+                Arrays.fill(hessian, 0);
+
+            data.reset();
+            long N = 0;
+            double sum_loss = 0;
+            int n;
+            while((n = data.next(X, y)) > 0)
+            {
+                checkInterrupted();
+                sum_loss += accumulate(block.bind(n), theta, grad, hessian);
+                N += n;
+                this.epoch_rows += n;
+            }
+            return (N > 0) ? mean(sum_loss, N, grad, hessian) : 0;
+        };
+    }
+
+    /* Fisher-Yates shuffle of the first n positions of the row permutation */
+    private void shuffle(int[] index, int n)
+    {
+        for(int i = n - 1; i > 0; i--)
+        {
+            int j = this.random.nextInt(i + 1);
+            int aux = index[i];
+            index[i] = index[j];
+            index[j] = aux;
+        }
+    }
+
+    public void fit(double[][] X, double[][] y, int epochs) throws Exception {
+        // Copy the jagged arrays once into contiguous matrices and train on them
+        fit(DenseMatrix.of(X), DenseMatrix.of(y), epochs);
+    }
+
+    /***
+     * Method to train the model with mini-batch gradient descent.
+     * @param X Samples (N x d).
+     * @param y Labels (N x 1).
+     * @param epochs Number of passes over the dataset.
+     * @param batch_size Number of samples per update, <= 0 for full-batch gradient descent.
+     */
+    public void fit(double[][] X, double[][] y, int epochs, int batch_size) throws Exception {
+        setBatchSize(batch_size);
+        fit(X, y, epochs);
+    }
+
+    public void fit(DenseMatrix X, DenseMatrix y, int epochs, int batch_size) throws Exception {
+        setBatchSize(batch_size);
+        fit(X, y, epochs);
+    }
+
+    public void fit(DenseMatrix X, DenseMatrix y, int epochs) throws Exception {
+        if(X.cols != this.input_dim)
+            throw new Exception("Invalid number of features. Expected " + this.input_dim + " and got " + X.cols + ".");
+
+        // Bind the fused kernel to the dataset, it is reused while the same matrices are fitted
+        if(kernel == null || !kernel.isBoundTo(X, y))
+            kernel = new DenseGradientKernel(X, y);
+
+        fit(kernel, epochs);
+    }
+
+    /***
+     * Method to train the model on sparse samples, every epoch costs O(nnz) instead of O(N * d).
+     * @param X Samples (N x d), CSR.
+     * @param y Labels (N x 1).
+     * @param epochs Number of passes over the dataset.
+     */
+    public void fit(SparseMatrix X, DenseMatrix y, int epochs) throws Exception {
+        if(X.cols != this.input_dim)
+            throw new Exception("Invalid number of features. Expected " + this.input_dim + " and got " + X.cols + ".");
+
+        if(kernel == null || !kernel.isBoundTo(X, y))
+            kernel = new SparseGradientKernel(X, y);
+
+        fit(kernel, epochs);
+    }
+
+    public void fit(SparseMatrix X, DenseMatrix y, int epochs, int batch_size) throws Exception {
+        setBatchSize(batch_size);
+        fit(X, y, epochs);
+    }
+
+    /***
+     * Method to update the model incrementally with a batch of new samples, e.g. labelled events as they
+     * arrive, without training from scratch. The batch gets one gradient step, or one step per mini-batch
+     * of setBatchSize rows, continuing from the current parameters and optimizer state (and the step
+     * count of the learning-rate schedule). get_loss returns the loss of the batch before the update.
+     *
+     * A new snapshot is published when the batch has been applied, so threads scoring through snapshot()
+     * never block and never see a half-applied update. Publishing copies the d weights, pass batches
+     * rather than single rows to wide models. Calls are serialized, they must not overlap a fit call.
+     * @param X Samples (N x d).
+     * @param y Labels (N x 1).
+     */
+    public synchronized void partial_fit(DenseMatrix X, DenseMatrix y) throws Exception {
+        if(X.cols != this.input_dim)
+            throw new Exception("Invalid number of features. Expected " + this.input_dim + " and got " + X.cols + ".");
+        partial_fit(new DenseGradientKernel(X, y));
+    }
+
+    public synchronized void partial_fit(SparseMatrix X, DenseMatrix y) throws Exception {
+        if(X.cols != this.input_dim)
+            throw new Exception("Invalid number of features. Expected " + this.input_dim + " and got " + X.cols + ".");
+        partial_fit(new SparseGradientKernel(X, y));
+    }
+
+    public void partial_fit(double[][] X, double[][] y) throws Exception {
+        partial_fit(DenseMatrix.of(X), DenseMatrix.of(y));
+    }
+
+    private void partial_fit(GradientKernel data)
+    {
+        int N = data.rows();
+        if(N == 0)
+            return;
+
+        Events.PartialFit event = new Events.PartialFit();
+        event.begin();
+
+        // The workspace may hold the gradients of an interrupted fit
+        Arrays.fill(this.gradients, 0);
+        int batch = (this.batch_size <= 0) ? N : this.batch_size;
+        double sum_loss = 0;
+        for(int from = 0; from < N; from += batch)
+        {
+            int to = Math.min(from + batch, N);
+            sum_loss += train_step(data, null, from, to, schedule.rate(this.eta, 0, this.steps));
+        }
+        this.loss = sum_loss / N;
+
+        // Copy-on-write, readers keep the previous snapshot until this single volatile write
+        publish();
+
+        event.rows = N;
+        event.loss = this.loss;
+        event.commit();
+    }
+
+    /***
+     * Method to train the model out of core, on a dataset that does not need to fit in memory. Every epoch
+     * pulls the rows from the source in blocks of block_rows rows, so the memory used is bounded by the
+     * block size. With a batch size (setBatchSize) the mini-batches are formed inside every block,
+     * otherwise every epoch is a single full-batch update.
+     * @param data Source of the rows, e.g. ColumnarDataset.blocks() or CsvDataset.blocks(path).
+     * @param epochs Number of passes over the dataset.
+     * @param block_rows Number of rows held in memory at once.
+     */
+    public void fit(RowBlockSource data, int epochs, int block_rows) throws Exception {
+        if(data.features() != this.input_dim)
+            throw new Exception("Invalid number of features. Expected " + this.input_dim + " and got " + data.features() + ".");
+        if(block_rows <= 0)
+            throw new IllegalArgumentException("Invalid block size " + block_rows + ".");
+
+        // Block buffers, reused by every block of every epoch
+        DenseMatrix X = new DenseMatrix(block_rows, this.input_dim);
+        DenseMatrix y = new DenseMatrix(block_rows, 1);
+
+        this.validation_loss = Double.NaN;
+        if(this.solver == Solver.HOGWILD)
+            throw new IllegalStateException("The HOGWILD solver trains on in-memory datasets only.");
+        if(this.solver != Solver.GRADIENT_DESCENT)
+            fit(objective(data, X, y), epochs);
+        else
+            fit(epochs, epoch -> stream_epoch(data, X, y, epoch));
+    }
+
+    private void fit(GradientKernel data, int epochs) throws Exception
+    {
+        if(this.solver == Solver.HOGWILD)
+        {
+            split_rows(data.rows());
+            HogwildSgd hogwild = new HogwildSgd(data, this.permutation, this.train_rows, (this.parallel == null) ? null : this.parallel.pool,
+                    this.atomic_updates, this.batch_size, this.random.nextLong());
+            fit(epochs, epoch -> hogwild_epoch(data, hogwild, epoch));
+            return;
+        }
+        if(this.solver != Solver.GRADIENT_DESCENT)
+        {
+            this.validation_loss = Double.NaN;
+            fit(objective(data), epochs);
+            return;
+        }
+
+        split_rows(data.rows());
+        fit(epochs, epoch -> train_epoch(data, epoch));
+    }
+
+    /* Second-order training, every epoch is one iteration of the solver over the whole dataset */
+    private void fit(Objective objective, int epochs) throws Exception
+    {
+        int D = this.input_dim + 1;
+        SecondOrderSolver optimizer = (this.solver == Solver.NEWTON)
+                ? new NewtonSolver(objective, D, this.tolerance)
+                : new LbfgsSolver(objective, D, this.tolerance, this.history);
+
+        // The solvers work on a single vector of parameters, the weights followed by the bias
+        double[] theta = new double[D];
+        System.arraycopy(this.weights.data, 0, theta, 0, this.input_dim);
+        theta[this.input_dim] = this.bias.data[0];
+
+        fit(epochs, epoch -> {
+            boolean converged = optimizer.iterate(theta);
+            System.arraycopy(theta, 0, this.weights.data, 0, this.input_dim);
+            this.bias.data[0] = theta[this.input_dim];
+            this.steps++;
+
+            // Same base-10 crossentropy reported by gradient descent
+            this.loss = optimizer.loss / Math.log(10);
+            this.gradient_norm = optimizer.gradientNorm();
+            return converged;
+        });
+    }
+
+    /* A training epoch over some kind of dataset, returns true when the model has converged */
+    private interface Epoch
+    {
+        boolean train(int epoch) throws Exception;
+    }
+
+    private void fit(int epochs, Epoch epoch) throws Exception
+    {
+        Arrays.fill(this.gradients, 0);
+        this.steps = 0;
+        this.optimizer.reset(this.input_dim + 1);
+
+        // Best monitored loss and the parameters (and training loss) that reached it, for early stopping
+        double best = Double.POSITIVE_INFINITY, best_loss = 0;
+        double[] best_parameters = (this.patience > 0) ? new double[this.input_dim + 1] : null;
+        int wait = 0;
+
+        Events.Fit fit = new Events.Fit();
+        fit.begin();
+        int i = 0;
+        long rows = 0;
+        try
+        {
+            for(; i < epochs; i++)
+            {
+                checkInterrupted();
+                Events.Epoch event = new Events.Epoch();
+                event.begin();
+                long allocated = EpochMetrics.allocatedBytes();
+                this.epoch_rows = 0;
+                long start = System.nanoTime();
+
+                // Perform a training epoch to tweak the model's parameters
+                boolean converged = epoch.train(i);
+
+                long elapsed = System.nanoTime() - start;
+                rows += this.epoch_rows;
+                publish();
+                report(event, i + 1, elapsed, allocated);
+
+                if(converged)
+                    break;
+
+                if(best_parameters != null)
+                {
+                    double monitored = Double.isNaN(this.validation_loss) ? this.loss : this.validation_loss;
+                    if(monitored < best - this.min_delta)
+                    {
+                        best = monitored;
+                        best_loss = this.loss;
+                        wait = 0;
+                        System.arraycopy(this.weights.data, 0, best_parameters, 0, this.input_dim);
+                        best_parameters[this.input_dim] = this.bias.data[0];
+                    }
+                    else if(++wait >= this.patience)
+                    {
+                        // No improvement for patience epochs, go back to the best epoch and stop
+                        System.arraycopy(best_parameters, 0, this.weights.data, 0, this.input_dim);
+                        this.bias.data[0] = best_parameters[this.input_dim];
+                        this.loss = best_loss;
+                        if(!Double.isNaN(this.validation_loss))
+                            this.validation_loss = best;
+                        publish();
+                        break;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            fit.solver = this.solver.name();
+            fit.features = this.input_dim;
+            fit.epochs = Math.min(i + 1, epochs);
+            fit.rows = rows;
+            fit.loss = this.loss;
+            fit.commit();
+        }
+    }
+
+    /* Hands the metrics of an epoch to the JFR event, the listener and the exporters */
+    private void report(Events.Epoch event, int epoch, long elapsed, long allocated)
+    {
+        long now = EpochMetrics.allocatedBytes();
+        EpochMetrics metrics = new EpochMetrics(epoch, this.loss, this.validation_loss, this.gradient_norm, elapsed, this.epoch_rows,
+                (allocated < 0 || now < 0) ? -1 : now - allocated);
+
+        if(event.shouldCommit())
+        {
+            event.epoch = epoch;
+            event.loss = metrics.loss;
+            event.validationLoss = metrics.validationLoss;
+            event.gradientNorm = metrics.gradientNorm;
+            event.rows = metrics.rows;
+            event.allocated = metrics.allocatedBytes;
+            event.commit();
+        }
+
+        if(listener != null)
+            listener.onEpochEnd(epoch, this.loss, elapsed);
+        for(MetricsExporter exporter : this.exporters)
+            exporter.export(metrics);
+        if(verbose == 1)
+            VERBOSE.export(metrics);
+    }
+
+    /***
+     * Method to use the table-based approximate sigmoid in predict, for inference-heavy workloads. The
+     * probabilities are off by at most FastSigmoid.MAX_ERROR (3e-6), training always uses the exact one.
+     * The published snapshot (ScoringModel) follows the same setting.
+     * @param fast true to approximate, false (default) for the exact sigmoid.
+     */
+    public void setFastSigmoid(boolean fast)
+    {
+        this.fast_sigmoid = fast;
+        publish();
+    }
+
+    /***
+     * Method to set the update rule of gradient descent (plain gradient descent by default). The
+     * optimizer keeps per-parameter state, it must not be shared with other models.
+     * @param optimizer Optimizer, e.g. Optimizer.adam(), null for plain gradient descent.
+     */
+    public void setOptimizer(Optimizer optimizer)
+    {
+        this.optimizer = (optimizer == null) ? Optimizer.sgd() : optimizer;
+        this.optimizer.reset(this.input_dim + 1);
+    }
+
+    /***
+     * Method to stop training once the monitored loss (the validation loss with a validation split,
+     * otherwise the training loss) has not improved by more than min_delta for patience epochs. The
+     * parameters of the best epoch are then restored.
+     * @param patience Number of epochs without improvement, <= 0 (default) to disable early stopping.
+     * @param min_delta Minimum decrease of the loss counted as an improvement.
+     */
+    public void setEarlyStopping(int patience, double min_delta)
+    {
+        if(!(min_delta >= 0))
+            throw new IllegalArgumentException("Invalid min_delta " + min_delta + ".");
+        this.patience = patience;
+        this.min_delta = min_delta;
+    }
+
+    /***
+     * Method to hold out a random fraction of the rows to monitor the loss on data the model is not
+     * trained on (get_validation_loss), used by early stopping. It applies to gradient descent on
+     * in-memory datasets, out-of-core and second-order training monitor the training loss.
+     * @param fraction Fraction of the rows, in [0, 1), 0 (default) to train on every row.
+     */
+    public void setValidationSplit(double fraction)
+    {
+        if(!(fraction >= 0 && fraction < 1))
+            throw new IllegalArgumentException("Invalid validation split " + fraction + ".");
+        this.validation_split = fraction;
+    }
+
+    /***
+     * Method to set the optimization algorithm. With NEWTON and LBFGS every epoch is one iteration
+     * over the whole dataset, the learning rate and the batch size are not used, and fit returns as
+     * soon as the model has converged.
+     * @param solver Solver, GRADIENT_DESCENT by default.
+     */
+    public void setSolver(Solver solver)
+    {
+        this.solver = (solver == null) ? Solver.GRADIENT_DESCENT : solver;
+    }
+
+    /***
+     * Method to set the convergence tolerance. Training stops when every component of the mean gradient
+     * is below it: at every iteration of the second-order solvers, at every epoch of full-batch gradient
+     * descent (mini-batch gradients are too noisy, use setEarlyStopping). The second-order solvers also
+     * stop when the loss cannot be decreased anymore.
+     * @param tolerance Tolerance, 1e-6 by default, 0 to always run every epoch of gradient descent.
+     */
+    public void setTolerance(double tolerance)
+    {
+        if(!(tolerance >= 0))
+            throw new IllegalArgumentException("Invalid tolerance " + tolerance + ".");
+        this.tolerance = tolerance;
+    }
+
+    /***
+     * Method to set the number of gradient changes L-BFGS keeps to approximate the curvature.
+     * @param history History size, 10 by default.
+     */
+    public void setHistory(int history)
+    {
+        if(history <= 0)
+            throw new IllegalArgumentException("Invalid history size " + history + ".");
+        this.history = history;
+    }
+
+    /***
+     * Method to set the number of samples per parameter update.
+     * @param batch_size Mini-batch size, <= 0 (default) for full-batch gradient descent.
+     */
+    public void setBatchSize(int batch_size)
+    {
+        this.batch_size = batch_size;
+    }
+
+    /***
+     * Method to enable or disable the per-epoch shuffling of the mini-batches (enabled by default).
+     */
+    public void setShuffle(boolean shuffle)
+    {
+        this.shuffle = shuffle;
+    }
+
+    /***
+     * Method to set the seed used to shuffle the mini-batches, for reproducible runs.
+     */
+    public void setSeed(long seed)
+    {
+        this.random = new Random(seed);
+    }
+
+    /***
+     * Method to set the learning-rate schedule (constant by default).
+     */
+    public void setLearningRateSchedule(LearningRateSchedule schedule)
+    {
+        this.schedule = (schedule == null) ? LearningRateSchedule.constant() : schedule;
+    }
+
+    /***
+     * Method to set the listener notified at the end of every epoch. Training stops with an
+     * InterruptedException when the thread running fit is interrupted.
+     * @param listener Listener, null to remove it.
+     */
+    public void setTrainingListener(TrainingListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /***
+     * Method to add a destination for the metrics of every epoch (loss, gradient norm, wall time, rows/s
+     * and bytes allocated by the training thread), e.g. MetricsExporter.logger(logger, Level.INFO). The
+     * exporters are called on the training thread, in the order they were added.
+     * @param exporter Exporter to add.
+     */
+    public void addMetricsExporter(MetricsExporter exporter)
+    {
+        if(exporter == null)
+            throw new IllegalArgumentException("The exporter is null.");
+        this.exporters.add(exporter);
+    }
+
+    /***
+     * Method to remove an exporter added with addMetricsExporter.
+     * @param exporter Exporter to remove.
+     */
+    public void removeMetricsExporter(MetricsExporter exporter)
+    {
+        this.exporters.remove(exporter);
+    }
+
+    /***
+     * Method to set the number of threads used to compute the gradients. The rows of every update are
+     * split into chunks whose partial gradients are computed on a ForkJoinPool and combined with a tree
+     * reduction. The HOGWILD solver runs one worker per thread instead. The pool is owned by the model,
+     * it is shut down when it is replaced, on setParallelism(1) and by close.
+     * @param threads Number of threads, 1 (default) to train on the calling thread.
+     */
+    public void setParallelism(int threads)
+    {
+        if(threads <= 1)
+        {
+            releasePool();
+            this.parallel = null;
+        }
+        else if(this.parallel == null || !this.owns_pool || this.parallel.pool.getParallelism() != threads)
+        {
+            releasePool();
+            this.parallel = new ParallelGradient(new ForkJoinPool(threads));
+            this.owns_pool = true;
+        }
+    }
+
+    /***
+     * Method to compute the gradients on an existing pool instead of a pool owned by the model. The pool
+     * belongs to the caller and is never shut down by the model, a pool created by setParallelism is.
+     * @param pool Pool to run on, null to train on the calling thread.
+     */
+    public void setPool(ForkJoinPool pool)
+    {
+        if(this.parallel == null || this.parallel.pool != pool)
+            releasePool();
+        this.parallel = (pool == null) ? null : new ParallelGradient(pool);
+        this.owns_pool = false;
+    }
+
+    /***
+     * Method to release the pool created by setParallelism, the model then trains and predicts on the
+     * calling thread. A pool passed to setPool is left running. The model stays usable.
+     */
+    @Override
+    public void close()
+    {
+        releasePool();
+        this.parallel = null;
+    }
+
+    private void releasePool()
+    {
+        if(this.owns_pool && this.parallel != null)
+            this.parallel.pool.shutdown();
+        this.owns_pool = false;
+    }
+
+    /***
+     * Method to choose how the HOGWILD solver writes the shared weights. Plain writes are lock-free and
+     * fastest, but an update can overwrite a concurrent update of the same weight (SGD tolerates the
+     * lost updates when they are rare, as on sparse data). Atomic updates apply every change with a
+     * compare-and-set loop on the weight, so none is lost, at the cost of a CAS per weight and step.
+     * @param atomic true for atomic updates, false (default) for plain writes.
+     */
+    public void setAtomicUpdates(boolean atomic)
+    {
+        this.atomic_updates = atomic;
+    }
+
+    /***
+     * Method to set the minimum number of rows of an update (the whole dataset, or a mini-batch) to
+     * compute its gradients in parallel. Smaller updates stay on the calling thread.
+     * @param rows Minimum number of rows, 32768 by default.
+     */
+    public void setParallelThreshold(int rows)
+    {
+        this.parallel_threshold = Math.max(1, rows);
+    }
+
+    /***
+     * Method to set the minimum number of rows of a predict call to score them in parallel, in row
+     * chunks on the same pool as the gradients. Independent of the training threshold.
+     * @param rows Minimum number of rows, 32768 by default.
+     */
+    public void setPredictParallelThreshold(int rows)
+    {
+        this.predict_parallel_threshold = Math.max(1, rows);
+    }
+
+    public double get_loss()
+    {
+        return this.loss;
+    }
+
+    /***
+     * @return Loss of the held-out rows after the last epoch, NaN without a validation split.
+     */
+    public double get_validation_loss()
+    {
+        return this.validation_loss;
+    }
+}
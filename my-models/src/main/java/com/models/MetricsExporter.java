@@ -0,0 +1,31 @@
+package com.models;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Destination of the metrics of every training epoch (loss, time, throughput, allocations), registered
+ * with LogisticRegression.addMetricsExporter. It is called on the training thread at the end of every
+ * epoch, a slow exporter slows the training down and should hand the metrics to another thread.
+ *
+ * @author Angel Cruz
+ * */
+@FunctionalInterface
+public interface MetricsExporter {
+    /**
+     * @param metrics Measurements of the epoch that just ended
+     * */
+    void export(EpochMetrics metrics);
+
+    /**
+     * Exporter writing one line per epoch to a java.util.logging logger. The line is only formatted when
+     * the logger accepts the level.
+     *
+     * @param logger Logger to write to
+     * @param level  Level of the records
+     * */
+    static MetricsExporter logger(Logger logger, Level level)
+    {
+        return metrics -> logger.log(level, metrics::toString);
+    }
+}
@@ -0,0 +1,232 @@
+package com.models;
+
+import com.tools.StandardizedDataset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Trained model saved to disk, so a service starts by loading a model instead of running the pipeline
+ * and fit again. The file holds the parameters, the names of the features and the statistics used to
+ * standardize them, so raw samples are scored exactly as the training data was preprocessed.
+ *
+ * Layout (little-endian):
+ *
+ *  magic    4 bytes "LRMF"
+ *  version  int
+ *  flags    int, FLAG_STANDARDIZED | FLAG_FAST_SIGMOID
+ *  features int, d
+ *  names    int count (d features, plus the target when known), count x (int length, UTF-8 bytes)
+ *  padding  zeros up to a multiple of 8 bytes
+ *  params   long model version, float64 bias, d weights, then d means and d standard deviations when standardized
+ *  crc      int, CRC32 of every previous byte
+ *
+ * @author Angel Cruz
+ * */
+public final class ModelFile {
+    static final byte[] MAGIC = {'L', 'R', 'M', 'F'};
+    static final int VERSION = 1;
+    static final int FLAG_STANDARDIZED = 1, FLAG_FAST_SIGMOID = 2;
+    /* File extension of the model files */
+    public static final String EXTENSION = ".lrm";
+
+    /* Model over standardized samples, as it was trained */
+    public final ScoringModel model;
+    /* Names of the features, followed by the name of the target when known */
+    public final String[] header;
+    /* Mean and standard deviation of every raw feature, null when the model was not trained on standardized data */
+    public final double[] mean, std;
+    /* Same model over raw samples, the standardization is folded into the weights and the bias */
+    public final ScoringModel raw;
+
+    public ModelFile(ScoringModel model, String[] header, double[] mean, double[] std)
+    {
+        int d = model.features();
+        if(header.length != d && header.length != d + 1)
+            throw new IllegalArgumentException(header.length + " names for a model of " + d + " features.");
+        if((mean == null) != (std == null) || (mean != null && (mean.length != d || std.length != d)))
+            throw new IllegalArgumentException("The standardization statistics do not match the " + d + " features.");
+
+        this.model = model;
+        this.header = header.clone();
+        this.mean = (mean == null) ? null : mean.clone();
+        this.std = (std == null) ? null : std.clone();
+        this.raw = (mean == null) ? model : fold(model, mean, std);
+    }
+
+    /**
+     * Constructor for a model trained on the output of the pipeline.
+     * */
+    public ModelFile(ScoringModel model, StandardizedDataset data)
+    {
+        this(model, data.header, data.mean, data.std);
+    }
+
+    /*
+     * b + sum_j w_j * (x_j - mean_j) / std_j = (b - sum_j w_j * mean_j / std_j) + sum_j (w_j / std_j) * x_j
+     */
+    private static ScoringModel fold(ScoringModel model, double[] mean, double[] std)
+    {
+        double[] w = model.weights();
+        double b = model.bias();
+        for(int j = 0; j < w.length; j++)
+        {
+            w[j] /= std[j];
+            b -= w[j] * mean[j];
+        }
+        return new ScoringModel(w, b, model.isFastSigmoid(), model.version());
+    }
+
+    /**
+     * @return Number of features (d) of a sample.
+     * */
+    public int features()
+    {
+        return model.features();
+    }
+
+    /**
+     * Method to standardize a raw sample with the statistics of the training data, in place.
+     * */
+    public double[] standardize(double[] sample)
+    {
+        if(mean != null)
+            for(int j = 0; j < mean.length; j++)
+                sample[j] = (sample[j] - mean[j]) / std[j];
+        return sample;
+    }
+
+    /**
+     * Method to write the model. The file is written next to its final path, flushed to the device and
+     * then moved in place, so readers never see a partially written model.
+     *
+     * @param path Destination file
+     * */
+    public void write(Path path) throws IOException
+    {
+        int d = features();
+        byte[][] names = new byte[header.length][];
+        int size = 20;
+        for(int j = 0; j < header.length; j++)
+        {
+            names[j] = header[j].getBytes(StandardCharsets.UTF_8);
+            size += 4 + names[j].length;
+        }
+        long paramsOffset = (size + 7) & ~7L;
+        long total = paramsOffset + (long) Double.BYTES * (2 + d + (mean != null ? 2 * d : 0)) + 4;
+        if(total > Integer.MAX_VALUE)
+            throw new IOException("Model of " + d + " features too large to be written.");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) total).order(ByteOrder.LITTLE_ENDIAN);
+        int flags = (mean != null ? FLAG_STANDARDIZED : 0) | (model.isFastSigmoid() ? FLAG_FAST_SIGMOID : 0);
+        buffer.put(MAGIC).putInt(VERSION).putInt(flags).putInt(d).putInt(names.length);
+        for(byte[] name : names)
+            buffer.putInt(name.length).put(name);
+
+        buffer.position((int) paramsOffset);
+        buffer.putLong(model.version()).putDouble(model.bias());
+        buffer.asDoubleBuffer().put(model.weights());
+        buffer.position(buffer.position() + d * Double.BYTES);
+        if(mean != null)
+        {
+            buffer.asDoubleBuffer().put(mean).put(std);
+            buffer.position(buffer.position() + 2 * d * Double.BYTES);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while(buffer.hasRemaining())
+                out.write(buffer);
+            out.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Method to load a model. The file is memory-mapped and decoded in a single pass, after its
+     * checksum has been verified.
+     *
+     * @param path Model file
+     * */
+    public static ModelFile read(Path path) throws IOException
+    {
+        ByteBuffer in;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if(size < 24 || size > Integer.MAX_VALUE)
+                throw new IOException(path + " is not a model file.");
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        try
+        {
+            byte[] magic = new byte[4];
+            in.get(magic);
+            if(!Arrays.equals(magic, MAGIC))
+                throw new IOException(path + " is not a model file.");
+            int version = in.getInt(), flags = in.getInt(), d = in.getInt(), count = in.getInt();
+            if(version != VERSION)
+                throw new IOException("Unsupported model file version " + version + ".");
+            if(d < 0 || (count != d && count != d + 1))
+                throw new IOException("Corrupted model file header.");
+
+            // Checksum of everything but the last 4 bytes
+            int end = in.limit() - 4;
+            CRC32 crc = new CRC32();
+            crc.update(in.duplicate().position(0).limit(end));
+            if(in.getInt(end) != (int) crc.getValue())
+                throw new IOException("Corrupted model file " + path + ", checksum mismatch.");
+
+            String[] header = new String[count];
+            for(int j = 0; j < count; j++)
+            {
+                byte[] name = new byte[in.getInt()];
+                in.get(name);
+                header[j] = new String(name, StandardCharsets.UTF_8);
+            }
+            in.position((in.position() + 7) & ~7);
+
+            long model_version = in.getLong();
+            double bias = in.getDouble();
+            double[] weights = new double[d];
+            in.asDoubleBuffer().get(weights);
+            in.position(in.position() + d * Double.BYTES);
+
+            double[] mean = null, std = null;
+            if((flags & FLAG_STANDARDIZED) != 0)
+            {
+                mean = new double[d];
+                std = new double[d];
+                in.asDoubleBuffer().get(mean).get(std);
+                in.position(in.position() + 2 * d * Double.BYTES);
+            }
+            if(in.position() != end)
+                throw new IOException("Corrupted model file " + path + ", unexpected size.");
+
+            ScoringModel model = new ScoringModel(weights, bias, (flags & FLAG_FAST_SIGMOID) != 0, model_version);
+            return new ModelFile(model, header, mean, std);
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("Corrupted model file " + path + ". " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.models;
+
+import com.tools.AlgebraToolkit;
+import com.tools.DenseMatrix;
+
+/**
+ * Newton's method (IRLS) for the logistic regression. Every iteration solves H . p = -g with a
+ * Cholesky factorization of the Hessian and takes a damped step along p. Near the optimum the full
+ * step is accepted and the convergence is quadratic.
+ *
+ * @author Angel Cruz
+ * */
+final class NewtonSolver extends SecondOrderSolver {
+    final AlgebraToolkit tools = new AlgebraToolkit();
+    // Hessian at the current parameters, and the workspace factored in place
+    double[] hessian, factor;
+    final double[] direction;
+
+    NewtonSolver(Objective objective, int parameters, double tolerance)
+    {
+        super(objective, parameters, tolerance);
+        this.hessian = new double[parameters * parameters];
+        this.factor = new double[parameters * parameters];
+        this.direction = new double[parameters];
+    }
+
+    @Override
+    boolean iterate(double[] theta) throws Exception
+    {
+        if(!evaluated)
+        {
+            loss = objective.evaluate(theta, grad, hessian);
+            evaluated = true;
+        }
+        if(converged())
+            return true;
+
+        // Newton direction, the Hessian is regularized when it is singular (e.g. separable data)
+        DenseMatrix L = new DenseMatrix(factor, n, n);
+        double ridge = 0;
+        for(int attempt = 0; ; attempt++)
+        {
+            System.arraycopy(hessian, 0, factor, 0, factor.length);
+            for(int i = 0; i < n; i++)
+                factor[i * n + i] += ridge;
+            if(tools.cholesky(L))
+                break;
+            if(attempt == 20)
+                throw new ArithmeticException("The Hessian could not be factored.");
+            ridge = (ridge == 0) ? 1e-10 * Math.max(1, maxDiagonal()) : ridge * 10;
+        }
+        for(int i = 0; i < n; i++)
+            direction[i] = -grad[i];
+        tools.choleskySolve(L, direction);
+
+        // The Hessian is evaluated together with the gradient at the trial points, for the next iteration
+        double[] next = factor;
+        if(!lineSearch(theta, direction, next))
+            return true;
+        factor = hessian;
+        hessian = next;
+
+        return converged();
+    }
+
+    private double maxDiagonal()
+    {
+        double max = 0;
+        for(int i = 0; i < n; i++)
+            max = Math.max(max, hessian[i * n + i]);
+        return max;
+    }
+}
@@ -0,0 +1,19 @@
+package com.models;
+
+/**
+ * Mean loss of the model over the whole dataset, as a function of the parameters. It is the view of
+ * the dataset the second-order solvers work with.
+ *
+ * @author Angel Cruz
+ * */
+@FunctionalInterface
+interface Objective {
+    /**
+     * @param theta   Parameters, the d weights followed by the bias
+     * @param grad    Output, overwritten with the mean gradient (d + 1 values)
+     * @param hessian Output, overwritten with the lower triangle of the mean Hessian ((d + 1)^2 values,
+     *                row-major), or null when only the gradient is needed
+     * @return Mean crossentropy, in natural logarithm
+     * */
+    double evaluate(double[] theta, double[] grad, double[] hessian) throws Exception;
+}
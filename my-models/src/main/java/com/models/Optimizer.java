@@ -0,0 +1,191 @@
+package com.models;
+
+/**
+ * Update rule used by LogisticRegression to turn the mean gradient of a step into a change of the
+ * parameters. Stateful rules keep one accumulator per parameter (d weights followed by the bias), an
+ * instance must therefore be used by a single model.
+ *
+ * With sparse data only the parameters of the columns used by the rows of a step are updated, the
+ * accumulators of the other ones are left untouched until their columns appear again (lazy updates).
+ *
+ * @author Angel Cruz
+ * */
+public interface Optimizer {
+    /**
+     * Method to clear the state for a model with the given number of parameters, called when fit starts.
+     * */
+    void reset(int parameters);
+
+    /**
+     * Method called once before the parameters of every step are updated.
+     *
+     * @param step Number of steps already performed by the current fit call
+     * */
+    default void begin(long step)
+    {}
+
+    /**
+     * @param i        Parameter, the weights first and the bias last
+     * @param gradient Mean gradient of the step for the parameter
+     * @param rate     Learning rate of the step, from the schedule
+     * @return Change to add to the parameter
+     * */
+    double delta(int i, double gradient, double rate);
+
+    /**
+     * Plain gradient descent, -rate * gradient (default). LogisticRegression applies it with its fused
+     * kernels instead of calling delta.
+     * */
+    static Optimizer sgd()
+    {
+        return Sgd.INSTANCE;
+    }
+
+    /**
+     * Gradient descent with (heavy-ball) momentum, v = beta * v - rate * gradient.
+     *
+     * @param beta Momentum, in [0, 1), 0.9 is the usual value
+     * */
+    static Optimizer momentum(double beta)
+    {
+        return new Momentum(beta);
+    }
+
+    /**
+     * Adam with the usual beta1 = 0.9, beta2 = 0.999 and epsilon = 1e-8.
+     * */
+    static Optimizer adam()
+    {
+        return new Adam(0.9, 0.999, 1e-8);
+    }
+
+    /**
+     * Adam, per-parameter rates from bias-corrected moving averages of the gradient and its square.
+     * */
+    static Optimizer adam(double beta1, double beta2, double epsilon)
+    {
+        return new Adam(beta1, beta2, epsilon);
+    }
+
+    /**
+     * AdaGrad, every parameter is scaled by the inverse root of the sum of its squared gradients, which
+     * suits sparse features that are rarely updated.
+     *
+     * @param epsilon Small value added to the root, 1e-8 is the usual value
+     * */
+    static Optimizer adaGrad(double epsilon)
+    {
+        return new AdaGrad(epsilon);
+    }
+
+    /* -rate * gradient, stateless so a single instance is shared */
+    final class Sgd implements Optimizer {
+        static final Sgd INSTANCE = new Sgd();
+
+        private Sgd()
+        {}
+
+        @Override
+        public void reset(int parameters)
+        {}
+
+        @Override
+        public double delta(int i, double gradient, double rate)
+        {
+            return -rate * gradient;
+        }
+    }
+
+    final class Momentum implements Optimizer {
+        final double beta;
+        double[] velocity = new double[0];
+
+        Momentum(double beta)
+        {
+            if(!(beta >= 0 && beta < 1))
+                throw new IllegalArgumentException("Invalid momentum " + beta + ".");
+            this.beta = beta;
+        }
+
+        @Override
+        public void reset(int parameters)
+        {
+            velocity = new double[parameters];
+        }
+
+        @Override
+        public double delta(int i, double gradient, double rate)
+        {
+            double v = beta * velocity[i] - rate * gradient;
+            velocity[i] = v;
+            return v;
+        }
+    }
+
+    final class Adam implements Optimizer {
+        final double beta1, beta2, epsilon;
+        double[] m = new double[0], v = new double[0];
+        // Bias corrections of the current step, 1 - beta^t
+        double correction1, correction2;
+
+        Adam(double beta1, double beta2, double epsilon)
+        {
+            if(!(beta1 >= 0 && beta1 < 1) || !(beta2 >= 0 && beta2 < 1) || !(epsilon > 0))
+                throw new IllegalArgumentException("Invalid Adam parameters. beta1 " + beta1 + ", beta2 " + beta2
+                        + ", epsilon " + epsilon + ".");
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        public void reset(int parameters)
+        {
+            m = new double[parameters];
+            v = new double[parameters];
+        }
+
+        @Override
+        public void begin(long step)
+        {
+            correction1 = 1 - Math.pow(beta1, step + 1);
+            correction2 = 1 - Math.pow(beta2, step + 1);
+        }
+
+        @Override
+        public double delta(int i, double gradient, double rate)
+        {
+            double mi = beta1 * m[i] + (1 - beta1) * gradient;
+            double vi = beta2 * v[i] + (1 - beta2) * gradient * gradient;
+            m[i] = mi;
+            v[i] = vi;
+            return -rate * (mi / correction1) / (Math.sqrt(vi / correction2) + epsilon);
+        }
+    }
+
+    final class AdaGrad implements Optimizer {
+        final double epsilon;
+        double[] squares = new double[0];
+
+        AdaGrad(double epsilon)
+        {
+            if(!(epsilon > 0))
+                throw new IllegalArgumentException("Invalid AdaGrad epsilon " + epsilon + ".");
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        public void reset(int parameters)
+        {
+            squares = new double[parameters];
+        }
+
+        @Override
+        public double delta(int i, double gradient, double rate)
+        {
+            double s = squares[i] + gradient * gradient;
+            squares[i] = s;
+            return -rate * gradient / (Math.sqrt(s) + epsilon);
+        }
+    }
+}
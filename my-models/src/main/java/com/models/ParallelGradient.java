@@ -0,0 +1,161 @@
+package com.models;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Data-parallel driver for a GradientKernel. The rows are split into a fixed number of contiguous
+ * chunks, every chunk accumulates its partial gradient and loss into its own slot of a reused
+ * workspace on a ForkJoinPool, and the partials are combined pairwise up the fork tree (tree
+ * reduction). The chunking only depends on the number of rows and the pool parallelism, so the
+ * result does not depend on thread scheduling.
+ *
+ * The same chunking is used to run row-independent work, such as batch scoring, on the pool.
+ *
+ * @author Angel Cruz
+ * */
+final class ParallelGradient {
+    /* Minimum number of rows handled by a single chunk */
+    static final int MIN_CHUNK = 1024;
+    /* Chunks per worker thread, to balance the load between the threads */
+    static final int CHUNKS_PER_THREAD = 4;
+
+    final ForkJoinPool pool;
+
+    // Workspace, one partial gradient and one partial loss per chunk
+    private double[][] partials = new double[0][];
+    private double[] losses = new double[0];
+
+    ParallelGradient(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Same contract as GradientKernel.accumulate, but computed on the pool.
+     * */
+    double accumulate(GradientKernel data, double[] w, double b, int[] index, int from, int to, double[] grad)
+    {
+        int rows = to - from;
+        int chunks = (int) Math.max(1, Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD, rows / MIN_CHUNK));
+        ensureWorkspace(chunks, grad.length);
+
+        pool.invoke(new Chunk(data, w, b, index, from, rows, chunks, 0, chunks));
+
+        // The root of the reduction tree is stored in the first slot
+        double[] total = partials[0];
+        for(int j = 0; j < grad.length; j++)
+            grad[j] += total[j];
+
+        return losses[0];
+    }
+
+    /**
+     * Task over a range of rows [from, to).
+     * */
+    @FunctionalInterface
+    interface RowRange {
+        void run(int from, int to);
+    }
+
+    /**
+     * Method to run a task over the rows [0, rows), split in chunks executed on the pool.
+     * */
+    void forEachChunk(int rows, RowRange task)
+    {
+        int chunks = (int) Math.max(1, Math.min((long) pool.getParallelism() * CHUNKS_PER_THREAD, rows / MIN_CHUNK));
+        pool.invoke(new RangeTask(task, rows, chunks, 0, chunks));
+    }
+
+    private void ensureWorkspace(int chunks, int width)
+    {
+        if(partials.length < chunks || (chunks > 0 && partials[0].length != width))
+        {
+            partials = new double[chunks][width];
+            losses = new double[chunks];
+        }
+    }
+
+    /**
+     * Task over the chunks [lo, hi). Its result (gradient and loss) is left in the slot lo.
+     * */
+    private final class Chunk extends RecursiveAction {
+        final GradientKernel data;
+        final double[] w;
+        final double b;
+        final int[] index;
+        final int from, rows, chunks, lo, hi;
+
+        Chunk(GradientKernel data, double[] w, double b, int[] index, int from, int rows, int chunks, int lo, int hi)
+        {
+            this.data = data;
+            this.w = w;
+            this.b = b;
+            this.index = index;
+            this.from = from;
+            this.rows = rows;
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(hi - lo == 1)
+            {
+                // Leaf, accumulate the rows of a single chunk into its own slot
+                double[] grad = partials[lo];
+                Arrays.fill(grad, 0);
+                int start = from + (int) ((long) rows * lo / chunks);
+                int end = from + (int) ((long) rows * hi / chunks);
+                losses[lo] = data.accumulate(w, b, index, start, end, grad);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            Chunk left = new Chunk(data, w, b, index, from, rows, chunks, lo, mid);
+            Chunk right = new Chunk(data, w, b, index, from, rows, chunks, mid, hi);
+            left.fork();
+            right.compute();
+            left.join();
+
+            // Combine the two halves into the slot lo
+            double[] a = partials[lo], c = partials[mid];
+            for(int j = 0; j < a.length; j++)
+                a[j] += c[j];
+            losses[lo] += losses[mid];
+        }
+    }
+
+    /**
+     * Task over the chunks [lo, hi) of a RowRange.
+     * */
+    private static final class RangeTask extends RecursiveAction {
+        final RowRange task;
+        final int rows, chunks, lo, hi;
+
+        RangeTask(RowRange task, int rows, int chunks, int lo, int hi)
+        {
+            this.task = task;
+            this.rows = rows;
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(hi - lo == 1)
+            {
+                task.run((int) ((long) rows * lo / chunks), (int) ((long) rows * hi / chunks));
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new RangeTask(task, rows, chunks, lo, mid), new RangeTask(task, rows, chunks, mid, hi));
+        }
+    }
+}
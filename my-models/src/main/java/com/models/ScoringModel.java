@@ -0,0 +1,153 @@
+package com.models;
+
+import com.tools.DenseMatrix;
+import com.tools.FastSigmoid;
+
+/**
+ * Frozen copy of the parameters of a LogisticRegression, used to score while the model keeps training.
+ * Every field is final and the arrays are private copies that are never written after construction,
+ * so an instance can be shared by any number of threads without locks. The model publishes a new
+ * instance through a volatile field (LogisticRegression.snapshot), readers always see a complete set
+ * of parameters, the old one or the new one.
+ *
+ * @author Angel Cruz
+ * */
+public final class ScoringModel {
+    private final double[] weights;
+    private final double bias;
+    private final boolean fast_sigmoid;
+    /* Version of the parameters, increases with every snapshot published by the same model */
+    private final long version;
+
+    /**
+     * Constructor to freeze a set of parameters, the weights are copied.
+     *
+     * @param weights      d weights
+     * @param bias         Bias
+     * @param fast_sigmoid true to use the approximate sigmoid (FastSigmoid)
+     * @param version      Version of the parameters
+     * */
+    public ScoringModel(double[] weights, double bias, boolean fast_sigmoid, long version)
+    {
+        this.weights = weights.clone();
+        this.bias = bias;
+        this.fast_sigmoid = fast_sigmoid;
+        this.version = version;
+    }
+
+    /**
+     * @return Number of features (d) of a row.
+     * */
+    public int features()
+    {
+        return weights.length;
+    }
+
+    public long version()
+    {
+        return version;
+    }
+
+    public boolean isFastSigmoid()
+    {
+        return fast_sigmoid;
+    }
+
+    public double bias()
+    {
+        return bias;
+    }
+
+    /**
+     * @return Copy of the weights.
+     * */
+    public double[] weights()
+    {
+        return weights.clone();
+    }
+
+    /**
+     * Method to score a single row.
+     *
+     * @param x d feature values
+     * @return Probability of the positive class
+     * */
+    public double score(double... x)
+    {
+        if(x.length != weights.length)
+            throw new IllegalArgumentException("Expected " + weights.length + " features and got " + x.length + ".");
+        return sigmoid(bias + LogisticRegression.KERNELS.dot(x, 0, weights, 0, weights.length));
+    }
+
+    /**
+     * Method to score a batch of rows without allocating.
+     *
+     * @param rows Row-major values of N rows, N * d values
+     * @param out  Output, the N probabilities are written to out[0, N)
+     * */
+    public void predictInto(double[] rows, double[] out)
+    {
+        if(rows.length % weights.length != 0)
+            throw new IllegalArgumentException(rows.length + " values are not a whole number of rows of " + weights.length + " features.");
+        predictInto(rows, 0, rows.length / weights.length, out, 0);
+    }
+
+    /**
+     * Method to score the rows [from, from + n) of a row-major buffer without allocating.
+     *
+     * @param rows      Row-major values, d per row
+     * @param from      First row
+     * @param n         Number of rows
+     * @param out       Output, the probabilities are written to out[outOffset, outOffset + n)
+     * @param outOffset First position of out
+     * */
+    public void predictInto(double[] rows, int from, int n, double[] out, int outOffset)
+    {
+        final int d = weights.length;
+        if(from < 0 || n < 0 || ((long) from + n) * d > rows.length || outOffset < 0 || (long) outOffset + n > out.length)
+            throw new IndexOutOfBoundsException("Rows [" + from + ", " + ((long) from + n) + ") of " + rows.length / Math.max(d, 1)
+                    + " into " + out.length + " values from " + outOffset + ".");
+
+        Events.Score event = new Events.Score();
+        event.begin();
+        for(int i = 0; i < n; i++)
+            out[outOffset + i] = bias + LogisticRegression.KERNELS.dot(rows, (from + i) * d, weights, 0, d);
+
+        if(fast_sigmoid)
+            FastSigmoid.sigmoid(out, outOffset, n);
+        else
+            LogisticRegression.KERNELS.sigmoid(out, outOffset, n);
+        event.rows = n;
+        event.commit();
+    }
+
+    /**
+     * Method to score the rows of a matrix without allocating.
+     *
+     * @param X   Samples (N x d)
+     * @param out Output, the N probabilities are written to out[0, N)
+     * */
+    public void predictInto(DenseMatrix X, double[] out)
+    {
+        if(X.cols != weights.length)
+            throw new IllegalArgumentException("Expected " + weights.length + " features and got " + X.cols + ".");
+        if(out.length < X.rows)
+            throw new IndexOutOfBoundsException(X.rows + " rows into " + out.length + " values.");
+
+        Events.Score event = new Events.Score();
+        event.begin();
+        for(int i = 0; i < X.rows; i++)
+            out[i] = bias + LogisticRegression.KERNELS.dot(X.data, X.index(i, 0), weights, 0, weights.length);
+        if(fast_sigmoid)
+            FastSigmoid.sigmoid(out, 0, X.rows);
+        else
+            LogisticRegression.KERNELS.sigmoid(out, 0, X.rows);
+        event.rows = X.rows;
+        event.commit();
+    }
+
+    private double sigmoid(double z)
+    {
+        return fast_sigmoid ? FastSigmoid.sigmoid(z) : 1 / (1 + Math.exp(-z));
+    }
+}
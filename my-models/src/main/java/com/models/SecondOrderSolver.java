@@ -0,0 +1,101 @@
+package com.models;
+
+/**
+ * Common part of the solvers that pick a search direction from the curvature of the loss (Newton and
+ * L-BFGS): the state at the current parameters, the convergence test and a backtracking line search
+ * along the direction.
+ *
+ * @author Angel Cruz
+ * */
+abstract class SecondOrderSolver {
+    /* Sufficient decrease (Armijo) constant of the line search */
+    static final double ARMIJO = 1e-4;
+    /* Maximum number of times the step is halved before giving up */
+    static final int MAX_BACKTRACKS = 40;
+
+    final Objective objective;
+    final double tolerance;
+    final int n;
+
+    // Loss and mean gradient at the current parameters, valid once evaluated
+    double loss;
+    double[] grad;
+    boolean evaluated = false;
+
+    // Trial point and its gradient, swapped with the current state when the step is accepted
+    double[] trial, trial_grad;
+
+    SecondOrderSolver(Objective objective, int parameters, double tolerance)
+    {
+        this.objective = objective;
+        this.n = parameters;
+        this.tolerance = tolerance;
+        this.grad = new double[parameters];
+        this.trial = new double[parameters];
+        this.trial_grad = new double[parameters];
+    }
+
+    /**
+     * Method to perform one iteration, updating theta in place.
+     *
+     * @param theta Parameters, the d weights followed by the bias
+     * @return true when the model has converged and no more iterations are needed
+     * */
+    abstract boolean iterate(double[] theta) throws Exception;
+
+    /* The gradient vanished, the largest component is under the tolerance */
+    boolean converged()
+    {
+        return gradientNorm() <= tolerance;
+    }
+
+    /* Largest component of the gradient at the current point */
+    double gradientNorm()
+    {
+        double max = 0;
+        for(int i = 0; i < n; i++)
+            max = Math.max(max, Math.abs(grad[i]));
+        return max;
+    }
+
+    /**
+     * Backtracking line search from the step 1 along the direction, halving the step until the loss
+     * decreases enough. On success theta, the loss and the gradient hold the accepted point.
+     *
+     * @param hessian Workspace to evaluate the Hessian at the trial points, or null
+     * @return false when no step decreases the loss, theta is then left unchanged
+     * */
+    boolean lineSearch(double[] theta, double[] direction, double[] hessian) throws Exception
+    {
+        double slope = 0;
+        for(int i = 0; i < n; i++)
+            slope += grad[i] * direction[i];
+        if(!(slope < 0))
+            return false;
+
+        double step = 1;
+        for(int k = 0; k < MAX_BACKTRACKS; k++, step *= 0.5)
+        {
+            for(int i = 0; i < n; i++)
+                trial[i] = theta[i] + step * direction[i];
+
+            double value = objective.evaluate(trial, trial_grad, hessian);
+            if(value <= loss + ARMIJO * step * slope)
+            {
+                accept(theta, value);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* Move to the trial point, keeping the previous gradient in trial_grad */
+    void accept(double[] theta, double value)
+    {
+        System.arraycopy(trial, 0, theta, 0, n);
+        double[] aux = grad;
+        grad = trial_grad;
+        trial_grad = aux;
+        loss = value;
+    }
+}
@@ -0,0 +1,33 @@
+package com.models;
+
+/**
+ * Optimization algorithm used by LogisticRegression.fit. The second-order solvers treat every epoch as
+ * one iteration over the whole dataset and stop as soon as the model has converged (see setTolerance).
+ *
+ * @author Angel Cruz
+ * */
+public enum Solver {
+    /**
+     * Full-batch or mini-batch gradient descent with the learning rate and its schedule (default).
+     * */
+    GRADIENT_DESCENT,
+    /**
+     * Newton's method, also known as IRLS. Every iteration solves the (d + 1) x (d + 1) Hessian system
+     * with a Cholesky factorization, O(N * d^2 + d^3), and usually converges in a handful of iterations.
+     * Meant for datasets with few features.
+     * */
+    NEWTON,
+    /**
+     * Limited-memory BFGS with a backtracking line search. It builds a curvature estimate from the
+     * last gradients, O(N * d) per iteration, and is meant for datasets with many features.
+     * */
+    LBFGS,
+    /**
+     * Asynchronous lock-free mini-batch SGD (Hogwild). The rows are split in one shard per thread of
+     * setParallelism (or setPool) and every thread updates the shared weights without locks, see
+     * setAtomicUpdates. It uses the learning rate, its schedule and the batch size (1 row when not set),
+     * always with the plain SGD update rule. Meant for wide sparse datasets, where the rows rarely
+     * update the same weights.
+     * */
+    HOGWILD
+}
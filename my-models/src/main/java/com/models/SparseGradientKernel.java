@@ -0,0 +1,179 @@
+package com.models;
+
+import com.tools.DenseMatrix;
+import com.tools.SparseMatrix;
+
+/**
+ * GradientKernel over a SparseMatrix of samples (N x d, CSR) and a DenseMatrix of labels (N x 1).
+ * The weighted sum and the gradient of every row only visit its non-zero values, so a pass costs
+ * O(nnz) instead of O(N * d).
+ *
+ * @author Angel Cruz
+ * */
+final class SparseGradientKernel extends GradientKernel {
+    final SparseMatrix X;
+    final DenseMatrix y;
+
+    SparseGradientKernel(SparseMatrix X, DenseMatrix y)
+    {
+        if(X.rows != y.rows)
+            throw new IllegalArgumentException("X has " + X.rows + " samples but y has " + y.rows + " labels.");
+        this.X = X;
+        this.y = y;
+    }
+
+    @Override
+    boolean isBoundTo(Object X, DenseMatrix y)
+    {
+        return this.X == X && this.y == y;
+    }
+
+    @Override
+    int rows()
+    {
+        return X.rows;
+    }
+
+    @Override
+    int features()
+    {
+        return X.cols;
+    }
+
+    @Override
+    double accumulate(double[] w, double b, int[] index, int from, int to, double[] grad)
+    {
+        final int d = X.cols, yStride = y.stride;
+        final double[] values = X.values, labels = y.data;
+        final int[] columns = X.columns;
+        double loss = 0;
+
+        for(int k = from; k < to; k++)
+        {
+            int i = (index == null) ? k : index[k];
+            int start = X.rowStart(i), end = X.rowEnd(i);
+
+            // Forward propagation, sparse weighted sum and sigmoid
+            double z = b;
+            for(int p = start; p < end; p++)
+                z += values[p] * w[columns[p]];
+            // A single exp, of -|z| so it never overflows, gives both the sigmoid and the loss
+            double e = Math.exp(-Math.abs(z));
+            double y_pred = sigmoid(z, e);
+
+            // Residual and gradients, scattered to the columns of the non-zero values only
+            double y_true = labels[y.offset + i * yStride];
+            double residual = y_pred - y_true;
+            for(int p = start; p < end; p++)
+                grad[columns[p]] += residual * values[p];
+            grad[d] += residual;
+
+            loss += logLoss(y_true, z, e);
+        }
+        return loss * LOG10_E;
+    }
+
+    @Override
+    void update(double[] w, double step, int[] index, int from, int to, double[] grad)
+    {
+        // Only the columns used by the rows of the step have a gradient, O(nnz) instead of O(d)
+        final int[] columns = X.columns;
+        for(int k = from; k < to; k++)
+        {
+            int i = (index == null) ? k : index[k];
+            for(int p = X.rowStart(i), end = X.rowEnd(i); p < end; p++)
+            {
+                int c = columns[p];
+                if(grad[c] != 0)
+                {
+                    w[c] -= step * grad[c];
+                    grad[c] = 0;
+                }
+            }
+        }
+        grad[X.cols] = 0;
+    }
+
+    @Override
+    void updateAtomic(double[] w, double step, int[] index, int from, int to, double[] grad)
+    {
+        final int[] columns = X.columns;
+        for(int k = from; k < to; k++)
+        {
+            int i = (index == null) ? k : index[k];
+            for(int p = X.rowStart(i), end = X.rowEnd(i); p < end; p++)
+            {
+                int c = columns[p];
+                if(grad[c] != 0)
+                {
+                    addAtomic(w, c, -step * grad[c]);
+                    grad[c] = 0;
+                }
+            }
+        }
+        grad[X.cols] = 0;
+    }
+
+    @Override
+    void update(double[] w, Optimizer optimizer, double rate, double scale, int[] index, int from, int to, double[] grad)
+    {
+        final int[] columns = X.columns;
+        for(int k = from; k < to; k++)
+        {
+            int i = (index == null) ? k : index[k];
+            for(int p = X.rowStart(i), end = X.rowEnd(i); p < end; p++)
+            {
+                int c = columns[p];
+                if(grad[c] != 0)
+                {
+                    w[c] += optimizer.delta(c, grad[c] * scale, rate);
+                    grad[c] = 0;
+                }
+            }
+        }
+        grad[X.cols] = 0;
+    }
+
+    @Override
+    double accumulateHessian(double[] w, double b, double[] grad, double[] hessian)
+    {
+        final int d = X.cols, D = d + 1, yStride = y.stride;
+        final double[] values = X.values, labels = y.data;
+        final int[] columns = X.columns;
+        double loss = 0;
+
+        for(int i = 0; i < X.rows; i++)
+        {
+            int start = X.rowStart(i), end = X.rowEnd(i);
+
+            double z = b;
+            for(int p = start; p < end; p++)
+                z += values[p] * w[columns[p]];
+            // A single exp, of -|z| so it never overflows, gives both the sigmoid and the loss
+            double e = Math.exp(-Math.abs(z));
+            double y_pred = sigmoid(z, e);
+            double y_true = labels[y.offset + i * yStride];
+            double residual = y_pred - y_true;
+            for(int p = start; p < end; p++)
+                grad[columns[p]] += residual * values[p];
+            grad[d] += residual;
+
+            // Only the pairs of non-zero values of the row, O(nnz(row)^2), stored in the lower triangle
+            double s = y_pred * (1 - y_pred);
+            for(int p = start; p < end; p++)
+            {
+                double sv = s * values[p];
+                for(int q = start; q <= p; q++)
+                {
+                    int a = Math.max(columns[p], columns[q]), c = Math.min(columns[p], columns[q]);
+                    hessian[a * D + c] += sv * values[q];
+                }
+                hessian[d * D + columns[p]] += sv;
+            }
+            hessian[d * D + d] += s;
+
+            loss += logLoss(y_true, z, e);
+        }
+        return loss * LOG10_E;
+    }
+}
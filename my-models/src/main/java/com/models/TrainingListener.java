@@ -0,0 +1,19 @@
+package com.models;
+
+/**
+ * Callback notified by LogisticRegression.fit at the end of every epoch, on the training thread. It
+ * is the hook used to stream the training progress (for example to a GUI) while fit is running. The
+ * full metrics of the epoch (gradient norm, rows/s, allocations) go to the MetricsExporter instances
+ * added with LogisticRegression.addMetricsExporter.
+ *
+ * @author Angel Cruz
+ * */
+@FunctionalInterface
+public interface TrainingListener {
+    /**
+     * @param epoch        Epoch number, starting at 1
+     * @param loss         Mean loss of the epoch
+     * @param elapsedNanos Wall-clock time of the epoch, in nanoseconds
+     * */
+    void onEpochEnd(int epoch, double loss, long elapsedNanos);
+}
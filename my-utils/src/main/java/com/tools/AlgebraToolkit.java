@@ -1,214 +1,547 @@
-package com.tools;
-
-import java.util.Random;
-
-
-public class AlgebraToolkit {
-    public double[][] sum(double[][] A, double[][] B)
-    {
-        // Compute the number of rows and columns for the sum operation
-        int ROWS = A.length, COLUMNS = A[0].length;
-
-        // Perform the element-wise sum of matrix A and the bias vector B
-        // Add each element of the bias B to the corresponding row in A
-        for(int i = 0; i < ROWS; i++)
-        {
-            for(int j = 0; j < COLUMNS; j++)
-            {
-                A[i][j] += B[0][j];
-            }
-        }
-        return A;
-    }
-
-    public double[][] subtract(double[][] A, double[][] B)
-    {
-        // Compute the numner of ROWS and COLUMNS of the matrix A
-        int ROWS = A.length, COLUMNS = A[0].length;
-
-        // Initialize a 2D-array to store the result of the operation
-        double[][] C = new double[ROWS][COLUMNS];
-
-        // Perform the subtraction operation between the matrix A and B
-        // Subtract the model's parameters (weights | bias) with the computed gradients (dW | dB)
-        for(int  i = 0; i < ROWS; i++)
-        {
-            for(int j = 0; j < COLUMNS; j++)
-            {
-                C[i][j] = A[i][j] - B[i][j];
-            }
-        }
-        return C;
-    }
-
-    public double[][] mult(double[][] A, double[][] B) throws Exception {
-        // Perform either :
-        //              * the multiplication between a vector and a vector
-        //              * the multiplication between a coeficient and vector
-        int i, j, ROWS, COLUMNS;
-
-        if (A.length == B.length) // ( vector | vector ) multiplication
-        {
-            // Initiliaze two 2D-arrays: X will store the higher-dimension vector and
-            // B the lower dimension vector
-            double[][] X;
-            double[][] Y;
-
-            // Let's verify if the 2D-arrays have the same dimension
-            if (A[0].length >= B[0].length)
-            {
-                X = A;
-                Y = B;
-            }
-            else
-            {
-                X = B;
-                Y = A;
-            }
-
-            // Compute the dimensions of the 2D arrays
-            ROWS = X.length;
-            COLUMNS = X[0].length;
-
-            // Define a 2D array to store operation's result
-            double[][] C = new double[ROWS][COLUMNS];
-
-            // Perform the ( array | array ) multiplication
-            int ind;
-            for (i = 0; i < ROWS; i++)
-            {
-                for(j = 0; j < COLUMNS; j++)
-                {
-                    ind = Math.min(j, 0);
-                    C[i][j] = X[i][j] * Y[i][ind];
-                }
-            }
-
-            return C;
-        }
-        else if (A.length == 1 || B.length == 1) // ( coeficient | array ) multiplication
-        {
-            // Get the coeficient to perform the operation
-            double[][] coef = (A.length == 1) ? A : B;
-            double[][] array = (A.length == 1) ? B : A;
-            int idx;
-
-            // Get the number of rows and columns of the 2D array
-            ROWS = array.length;
-            COLUMNS = array[0].length;
-
-            // Define a 2D array to store operation's result
-            double[][] C = new double[ROWS][COLUMNS];
-
-            // Perform (coeficient | array ) multiplication
-            for(i = 0; i < ROWS; i++)
-            {
-                for(j = 0; j < COLUMNS; j++)
-                {
-                    idx = Math.min(j, coef[0].length - 1);
-                    C[i][j] = coef[0][idx] * array[i][j];
-                }
-            }
-
-            return C;
-        }
-        else
-        {
-            throw new Exception("Invalid arrays size. A size " + A.length + " and B size " + B.length + ".");
-        }
-    }
-
-    public double[][] matmul(double[][] A, double[][] B)
-    {
-        /*
-         *   Method to perform the dot-product operation between two 2D-arrays.
-         */
-
-        // Compute the matrix size (square matrices)
-        int X = A[0].length, Y = A.length, Z = B[0].length;
-
-        // Define a 2D array to store the result of the operation
-        double[][] C = new double[Y][Z];
-
-        // Perform dot-product between A and B matrices (square matrices)
-        for(int i = 0; i < X; i++)
-        {
-            for(int j = 0; j < Y; j++)
-            {
-                for(int z = 0; z < Z; z++)
-                {
-                    C[j][z] += A[j][i] * B[i][z];
-                }
-            }
-        }
-
-        return C;
-    }
-
-    public double[][] randomNormal(int[] shape, double mean, double std)
-    {
-        // Define a 2D array where we are going to store the samples
-        double[][] samples = new double[shape[0]][shape[1]];
-
-        // Create an object from the Random class
-        Random rand = new Random();
-
-        // Generate random samples from a normal distribution
-        for (int i = 0; i < shape[0]; i++)
-        {
-            for (int j = 0; j < shape[1]; j++)
-            {
-                samples[i][j] = rand.nextGaussian(mean, std);
-            }
-        }
-
-        return samples;
-    }
-
-    public double[][] reduce_sum(double[][] X)
-    {
-        // Define an integer to store the input dimension of the data
-        int n = X[0].length;
-        // Define a 2D-array to store the result
-        double[][] result = new double[1][n];
-
-        // Compute the sum along the axis = 0
-        for (double[] x : X)
-            for (int j = 0; j < n; j++) {
-                result[0][j] += x[j];
-            }
-
-        return result;
-    }
-
-    public double[][] reduce_mean(double[][] X)
-    {
-        // Define an integer to store the input dimension
-        int input_dim = X[0].length;
-        int N = X.length;
-        // Perform the sum along the rows
-        double[][] addition = reduce_sum(X);
-        // Divide the data by the amount of samples (N)
-        for(int i = 0; i < input_dim; i++)
-        {
-            addition[0][i] /= N;
-        }
-
-        return addition;
-    }
-
-    public double[][] transpose(double[][] X)
-    {
-        // Initialize a 2D-array to storeh the transposed array
-        double[][] C = new double[X[0].length][X.length];
-        // Tranpose X and store the transposed result in C
-        for(int i = 0; i < X.length; i++)
-        {
-            for(int j = 0; j < X[0].length; j++)
-            {
-                C[j][i] = X[i][j];
-            }
-        }
-        return C;
-    }
-}
\ No newline at end of file
+package com.tools;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+public class AlgebraToolkit {
+    /* Scalar or SIMD backend of the DenseMatrix kernels, picked at startup */
+    private static final VectorKernels KERNELS = Kernels.get();
+    /* Number of multiply-adds from which matmul switches to the cache-blocked kernel */
+    static final long BLOCKED_MATMUL_THRESHOLD = 1L << 18;
+
+    public double[][] sum(double[][] A, double[][] B)
+    {
+        // Compute the number of rows and columns for the sum operation
+        int ROWS = A.length, COLUMNS = A[0].length;
+
+        // Perform the element-wise sum of matrix A and the bias vector B
+        // Add each element of the bias B to the corresponding row in A
+        for(int i = 0; i < ROWS; i++)
+        {
+            for(int j = 0; j < COLUMNS; j++)
+            {
+                A[i][j] += B[0][j];
+            }
+        }
+        return A;
+    }
+
+    public double[][] subtract(double[][] A, double[][] B)
+    {
+        // Compute the numner of ROWS and COLUMNS of the matrix A
+        int ROWS = A.length, COLUMNS = A[0].length;
+
+        // Initialize a 2D-array to store the result of the operation
+        double[][] C = new double[ROWS][COLUMNS];
+
+        // Perform the subtraction operation between the matrix A and B
+        // Subtract the model's parameters (weights | bias) with the computed gradients (dW | dB)
+        for(int  i = 0; i < ROWS; i++)
+        {
+            for(int j = 0; j < COLUMNS; j++)
+            {
+                C[i][j] = A[i][j] - B[i][j];
+            }
+        }
+        return C;
+    }
+
+    public double[][] mult(double[][] A, double[][] B) throws Exception {
+        // Perform either :
+        //              * the multiplication between a vector and a vector
+        //              * the multiplication between a coeficient and vector
+        int i, j, ROWS, COLUMNS;
+
+        if (A.length == B.length) // ( vector | vector ) multiplication
+        {
+            // Initiliaze two 2D-arrays: X will store the higher-dimension vector and
+            // B the lower dimension vector
+            double[][] X;
+            double[][] Y;
+
+            // Let's verify if the 2D-arrays have the same dimension
+            if (A[0].length >= B[0].length)
+            {
+                X = A;
+                Y = B;
+            }
+            else
+            {
+                X = B;
+                Y = A;
+            }
+
+            // Compute the dimensions of the 2D arrays
+            ROWS = X.length;
+            COLUMNS = X[0].length;
+
+            // Define a 2D array to store operation's result
+            double[][] C = new double[ROWS][COLUMNS];
+
+            // Perform the ( array | array ) multiplication
+            int ind;
+            for (i = 0; i < ROWS; i++)
+            {
+                for(j = 0; j < COLUMNS; j++)
+                {
+                    ind = Math.min(j, 0);
+                    C[i][j] = X[i][j] * Y[i][ind];
+                }
+            }
+
+            return C;
+        }
+        else if (A.length == 1 || B.length == 1) // ( coeficient | array ) multiplication
+        {
+            // Get the coeficient to perform the operation
+            double[][] coef = (A.length == 1) ? A : B;
+            double[][] array = (A.length == 1) ? B : A;
+            int idx;
+
+            // Get the number of rows and columns of the 2D array
+            ROWS = array.length;
+            COLUMNS = array[0].length;
+
+            // Define a 2D array to store operation's result
+            double[][] C = new double[ROWS][COLUMNS];
+
+            // Perform (coeficient | array ) multiplication
+            for(i = 0; i < ROWS; i++)
+            {
+                for(j = 0; j < COLUMNS; j++)
+                {
+                    idx = Math.min(j, coef[0].length - 1);
+                    C[i][j] = coef[0][idx] * array[i][j];
+                }
+            }
+
+            return C;
+        }
+        else
+        {
+            throw new Exception("Invalid arrays size. A size " + A.length + " and B size " + B.length + ".");
+        }
+    }
+
+    public double[][] matmul(double[][] A, double[][] B)
+    {
+        /*
+         *   Method to perform the dot-product operation between two 2D-arrays.
+         */
+
+        // Compute the matrix size
+        int X = A[0].length, Y = A.length, Z = B[0].length;
+
+        // Large general products go through the cache-blocked kernel on contiguous copies
+        if(Z > 1 && (long) X * Y * Z >= BLOCKED_MATMUL_THRESHOLD)
+            return matmul(DenseMatrix.of(A), DenseMatrix.of(B)).toArray();
+
+        // Define a 2D array to store the result of the operation
+        double[][] C = new double[Y][Z];
+
+        // Perform dot-product between A and B matrices, row by row so every array is read sequentially
+        for(int j = 0; j < Y; j++)
+        {
+            double[] a = A[j], c = C[j];
+            for(int i = 0; i < X; i++)
+            {
+                double aji = a[i];
+                double[] b = B[i];
+                for(int z = 0; z < Z; z++)
+                {
+                    c[z] += aji * b[z];
+                }
+            }
+        }
+
+        return C;
+    }
+
+    public double[][] randomNormal(int[] shape, double mean, double std)
+    {
+        // Define a 2D array where we are going to store the samples
+        double[][] samples = new double[shape[0]][shape[1]];
+
+        // Create an object from the Random class
+        Random rand = new Random();
+
+        // Generate random samples from a normal distribution
+        for (int i = 0; i < shape[0]; i++)
+        {
+            for (int j = 0; j < shape[1]; j++)
+            {
+                samples[i][j] = rand.nextGaussian(mean, std);
+            }
+        }
+
+        return samples;
+    }
+
+    public double[][] reduce_sum(double[][] X)
+    {
+        // Define an integer to store the input dimension of the data
+        int n = X[0].length;
+        // Define a 2D-array to store the result
+        double[][] result = new double[1][n];
+
+        // Compute the sum along the axis = 0
+        for (double[] x : X)
+            for (int j = 0; j < n; j++) {
+                result[0][j] += x[j];
+            }
+
+        return result;
+    }
+
+    public double[][] reduce_mean(double[][] X)
+    {
+        // Define an integer to store the input dimension
+        int input_dim = X[0].length;
+        int N = X.length;
+        // Perform the sum along the rows
+        double[][] addition = reduce_sum(X);
+        // Divide the data by the amount of samples (N)
+        for(int i = 0; i < input_dim; i++)
+        {
+            addition[0][i] /= N;
+        }
+
+        return addition;
+    }
+
+    public double[][] transpose(double[][] X)
+    {
+        // Initialize a 2D-array to storeh the transposed array
+        double[][] C = new double[X[0].length][X.length];
+        // Tranpose X and store the transposed result in C
+        for(int i = 0; i < X.length; i++)
+        {
+            for(int j = 0; j < X[0].length; j++)
+            {
+                C[j][i] = X[i][j];
+            }
+        }
+        return C;
+    }
+
+    /*
+     * DenseMatrix overloads. They follow the same semantics as the double[][] methods above, but
+     * walk a single contiguous array instead of one heap array per row.
+     * */
+
+    public DenseMatrix sum(DenseMatrix A, DenseMatrix B)
+    {
+        // Compute the number of rows and columns for the sum operation
+        int ROWS = A.rows, COLUMNS = A.cols;
+        double[] a = A.data, b = B.data;
+        int bRow = B.offset;
+
+        // Add each element of the bias B (first row) to the corresponding row in A
+        for(int i = 0; i < ROWS; i++)
+        {
+            int aRow = A.offset + i * A.stride;
+            for(int j = 0; j < COLUMNS; j++)
+            {
+                a[aRow + j] += b[bRow + j];
+            }
+        }
+        return A;
+    }
+
+    public DenseMatrix subtract(DenseMatrix A, DenseMatrix B)
+    {
+        // Compute the number of ROWS and COLUMNS of the matrix A
+        int ROWS = A.rows, COLUMNS = A.cols;
+
+        // Initialize a matrix to store the result of the operation
+        DenseMatrix C = new DenseMatrix(ROWS, COLUMNS);
+        double[] a = A.data, b = B.data, c = C.data;
+
+        // Perform the element-wise subtraction between the matrix A and B
+        for(int i = 0; i < ROWS; i++)
+        {
+            int aRow = A.offset + i * A.stride, bRow = B.offset + i * B.stride, cRow = i * COLUMNS;
+            for(int j = 0; j < COLUMNS; j++)
+            {
+                c[cRow + j] = a[aRow + j] - b[bRow + j];
+            }
+        }
+        return C;
+    }
+
+    public DenseMatrix mult(DenseMatrix A, DenseMatrix B) throws Exception {
+        // Perform either :
+        //              * the multiplication between a vector and a vector
+        //              * the multiplication between a coeficient and vector
+        if (A.rows == B.rows) // ( vector | vector ) multiplication
+        {
+            // X stores the higher-dimension matrix and Y the column that scales each of its rows
+            DenseMatrix X = (A.cols >= B.cols) ? A : B;
+            DenseMatrix Y = (A.cols >= B.cols) ? B : A;
+
+            int ROWS = X.rows, COLUMNS = X.cols;
+            DenseMatrix C = new DenseMatrix(ROWS, COLUMNS);
+            double[] x = X.data, y = Y.data, c = C.data;
+
+            // Perform the ( array | array ) multiplication, each row of X times the first column of Y
+            for (int i = 0; i < ROWS; i++)
+            {
+                int xRow = X.offset + i * X.stride, cRow = i * COLUMNS;
+                double scale = y[Y.offset + i * Y.stride];
+                for(int j = 0; j < COLUMNS; j++)
+                {
+                    c[cRow + j] = x[xRow + j] * scale;
+                }
+            }
+            return C;
+        }
+        else if (A.rows == 1 || B.rows == 1) // ( coeficient | array ) multiplication
+        {
+            // Get the coeficient to perform the operation
+            DenseMatrix coef = (A.rows == 1) ? A : B;
+            DenseMatrix array = (A.rows == 1) ? B : A;
+
+            int ROWS = array.rows, COLUMNS = array.cols, last = coef.cols - 1;
+            DenseMatrix C = new DenseMatrix(ROWS, COLUMNS);
+            double[] k = coef.data, x = array.data, c = C.data;
+
+            // Perform (coeficient | array ) multiplication
+            for(int i = 0; i < ROWS; i++)
+            {
+                int xRow = array.offset + i * array.stride, cRow = i * COLUMNS;
+                for(int j = 0; j < COLUMNS; j++)
+                {
+                    c[cRow + j] = k[coef.offset + Math.min(j, last)] * x[xRow + j];
+                }
+            }
+            return C;
+        }
+        else
+        {
+            throw new Exception("Invalid arrays size. A size " + A.rows + " and B size " + B.rows + ".");
+        }
+    }
+
+    public DenseMatrix matmul(DenseMatrix A, DenseMatrix B)
+    {
+        /*
+         *   Method to perform the dot-product operation between two matrices.
+         */
+        return matmul(A, B, new DenseMatrix(A.rows, B.cols));
+    }
+
+    /**
+     * Method to perform the dot-product A . B into a preallocated matrix C, which is overwritten.
+     *
+     * @param A Matrix of m x k
+     * @param B Matrix of k x n
+     * @param C Output matrix of m x n, must not share storage with A or B
+     * @return C
+     * */
+    public DenseMatrix matmul(DenseMatrix A, DenseMatrix B, DenseMatrix C)
+    {
+        int ROWS = A.rows, SHARED = A.cols, COLUMNS = B.cols;
+        if(B.rows != SHARED || C.rows != ROWS || C.cols != COLUMNS)
+            throw new IllegalArgumentException("Invalid matrices size. A " + ROWS + " x " + SHARED + ", B "
+                    + B.rows + " x " + COLUMNS + " and C " + C.rows + " x " + C.cols + ".");
+
+        double[] a = A.data, b = B.data, c = C.data;
+
+        // Matrix-vector product (X . W), a dot product per row when W is stored contiguously
+        if(COLUMNS == 1 && (B.stride == 1 || SHARED <= 1))
+        {
+            for(int i = 0; i < ROWS; i++)
+                c[C.offset + i * C.stride] = KERNELS.dot(a, A.offset + i * A.stride, b, B.offset, SHARED);
+
+            return C;
+        }
+
+        for(int i = 0; i < ROWS; i++)
+            Arrays.fill(c, C.offset + i * C.stride, C.offset + i * C.stride + COLUMNS, 0.0);
+
+        // General product, cache-blocked with packed panels once it no longer fits in cache
+        if((long) ROWS * SHARED * COLUMNS >= BLOCKED_MATMUL_THRESHOLD)
+        {
+            BlockedMatmul.multiply(A, B, C);
+            return C;
+        }
+
+        // Small product, row by row: C[i] += A[i][k] * B[k], so A, B and C are all read sequentially
+        for(int i = 0; i < ROWS; i++)
+        {
+            int aRow = A.offset + i * A.stride, cRow = C.offset + i * C.stride;
+            for(int k = 0; k < SHARED; k++)
+            {
+                KERNELS.axpy(a[aRow + k], b, B.offset + k * B.stride, c, cRow, COLUMNS);
+            }
+        }
+        return C;
+    }
+
+    public DenseMatrix matmul(SparseMatrix A, DenseMatrix B)
+    {
+        /*
+         *   Method to perform the dot-product operation between a sparse and a dense matrix.
+         */
+        return matmul(A, B, new DenseMatrix(A.rows, B.cols));
+    }
+
+    /**
+     * Method to perform the dot-product A . B of a sparse A into a preallocated matrix C, which is
+     * overwritten. Only the non-zero values of A are visited, the cost is O(nnz(A) * n).
+     *
+     * @param A Sparse matrix of m x k
+     * @param B Matrix of k x n
+     * @param C Output matrix of m x n, must not share storage with B
+     * @return C
+     * */
+    public DenseMatrix matmul(SparseMatrix A, DenseMatrix B, DenseMatrix C)
+    {
+        int ROWS = A.rows, COLUMNS = B.cols;
+        if(B.rows != A.cols || C.rows != ROWS || C.cols != COLUMNS)
+            throw new IllegalArgumentException("Invalid matrices size. A " + ROWS + " x " + A.cols + ", B "
+                    + B.rows + " x " + COLUMNS + " and C " + C.rows + " x " + C.cols + ".");
+
+        double[] b = B.data, c = C.data;
+
+        // Matrix-vector product (X . W), a sparse dot product per row when W is stored contiguously
+        if(COLUMNS == 1 && (B.stride == 1 || B.rows <= 1))
+        {
+            for(int i = 0; i < ROWS; i++)
+                c[C.offset + i * C.stride] = A.dot(i, b, B.offset);
+
+            return C;
+        }
+
+        // General product, C[i] = sum of A[i][k] * B[k] over the non-zero values of the row i
+        for(int i = 0; i < ROWS; i++)
+        {
+            int cRow = C.offset + i * C.stride;
+            Arrays.fill(c, cRow, cRow + COLUMNS, 0.0);
+            for(int k = A.rowStart(i), end = A.rowEnd(i); k < end; k++)
+                KERNELS.axpy(A.values[k], b, B.offset + A.columns[k] * B.stride, c, cRow, COLUMNS);
+        }
+        return C;
+    }
+
+    public DenseMatrix reduce_sum(DenseMatrix X)
+    {
+        // Define a 1 x n matrix to store the result
+        int n = X.cols;
+        DenseMatrix result = new DenseMatrix(1, n);
+        double[] x = X.data, r = result.data;
+
+        // Compute the sum along the axis = 0
+        if(n == 1)
+        {
+            // Column vector, a single reduction over the rows
+            if(X.stride == 1 || X.rows <= 1)
+                r[0] = KERNELS.sum(x, X.offset, X.rows);
+            else
+                for(int i = 0; i < X.rows; i++)
+                    r[0] += x[X.offset + i * X.stride];
+
+            return result;
+        }
+        for(int i = 0; i < X.rows; i++)
+        {
+            KERNELS.axpy(1.0, x, X.offset + i * X.stride, r, 0, n);
+        }
+        return result;
+    }
+
+    public DenseMatrix reduce_mean(DenseMatrix X)
+    {
+        // Perform the sum along the rows
+        DenseMatrix addition = reduce_sum(X);
+        // Divide the data by the amount of samples (N)
+        for(int i = 0; i < X.cols; i++)
+        {
+            addition.data[i] /= X.rows;
+        }
+        return addition;
+    }
+
+    public DenseMatrix transpose(DenseMatrix X)
+    {
+        // Initialize a matrix to store the transposed array
+        DenseMatrix C = new DenseMatrix(X.cols, X.rows);
+        double[] x = X.data, c = C.data;
+
+        // Tranpose X and store the transposed result in C
+        for(int i = 0; i < X.rows; i++)
+        {
+            int xRow = X.offset + i * X.stride;
+            for(int j = 0; j < X.cols; j++)
+            {
+                c[j * X.rows + i] = x[xRow + j];
+            }
+        }
+        return C;
+    }
+
+    /**
+     * Method to compute the Cholesky factorization A = L . L^T of a symmetric positive definite matrix,
+     * in place. Only the lower triangle of A is read, and it is overwritten with L.
+     *
+     * @param A Square matrix of n x n
+     * @return false when A is not (numerically) positive definite, A is then left partially factored
+     * */
+    public boolean cholesky(DenseMatrix A)
+    {
+        int n = A.rows;
+        if(A.cols != n)
+            throw new IllegalArgumentException("Cholesky of a non square " + A + ".");
+        double[] a = A.data;
+
+        for(int j = 0; j < n; j++)
+        {
+            int jRow = A.offset + j * A.stride;
+
+            // Diagonal element, the squared norm of the row j of L so far is subtracted
+            double diagonal = a[jRow + j] - KERNELS.dot(a, jRow, a, jRow, j);
+            if(!(diagonal > 0))
+                return false;
+            double l = Math.sqrt(diagonal);
+            a[jRow + j] = l;
+
+            // Column j of L below the diagonal
+            for(int i = j + 1; i < n; i++)
+            {
+                int iRow = A.offset + i * A.stride;
+                a[iRow + j] = (a[iRow + j] - KERNELS.dot(a, iRow, a, jRow, j)) / l;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to solve A . x = b given the Cholesky factor L of A (see cholesky), in place.
+     *
+     * @param L Lower triangular factor of n x n
+     * @param b Right-hand side of n values, overwritten with x
+     * @return b
+     * */
+    public double[] choleskySolve(DenseMatrix L, double[] b)
+    {
+        int n = L.rows;
+        double[] l = L.data;
+
+        // Forward substitution, L . z = b
+        for(int i = 0; i < n; i++)
+        {
+            int iRow = L.offset + i * L.stride;
+            b[i] = (b[i] - KERNELS.dot(l, iRow, b, 0, i)) / l[iRow + i];
+        }
+        // Back substitution, L^T . x = z
+        for(int i = n - 1; i >= 0; i--)
+        {
+            double sum = b[i];
+            for(int k = i + 1; k < n; k++)
+                sum -= l[L.offset + k * L.stride + i] * b[k];
+            b[i] = sum / l[L.offset + i * L.stride + i];
+        }
+        return b;
+    }
+}
@@ -0,0 +1,155 @@
+package com.tools;
+
+/**
+ * Cache-blocked general matrix multiplication, C += A . B, for DenseMatrix operands of any shape.
+ *
+ * The shared dimension is split in KC-deep blocks and the columns of B in NC-wide blocks. Every
+ * KC x NC block of B is packed once into contiguous NR-wide column strips (kept in L3), every MC x KC
+ * block of A is packed into contiguous MR-high row strips (kept in L2), and a MR x NR micro-kernel
+ * multiplies one strip of each, keeping the MR * NR partial sums of C in registers for the whole KC
+ * loop. Partial strips at the edges are padded with zeros while packing, so the micro-kernel never
+ * branches, and only the valid part of the tile is written back to C.
+ *
+ * @author Angel Cruz
+ * */
+final class BlockedMatmul {
+    /* Micro-kernel tile, MR rows of A times NR columns of B */
+    static final int MR = 4, NR = 4;
+    /* Cache blocks: shared dimension, rows of A and columns of B */
+    static final int KC = 256, MC = 128, NC = 1024;
+
+    private BlockedMatmul()
+    {}
+
+    /**
+     * Method to accumulate the product A (m x k) . B (k x n) into C (m x n).
+     * */
+    static void multiply(DenseMatrix A, DenseMatrix B, DenseMatrix C)
+    {
+        int M = A.rows, K = A.cols, N = B.cols;
+
+        // Packing buffers, sized for the largest block and reused by every block
+        double[] packedA = new double[roundUp(Math.min(MC, M), MR) * Math.min(KC, K)];
+        double[] packedB = new double[roundUp(Math.min(NC, N), NR) * Math.min(KC, K)];
+        double[] tile = new double[MR * NR];
+
+        for(int jc = 0; jc < N; jc += NC)
+        {
+            int nc = Math.min(NC, N - jc);
+            for(int pc = 0; pc < K; pc += KC)
+            {
+                int kc = Math.min(KC, K - pc);
+                packB(B, pc, jc, kc, nc, packedB);
+
+                for(int ic = 0; ic < M; ic += MC)
+                {
+                    int mc = Math.min(MC, M - ic);
+                    packA(A, ic, pc, mc, kc, packedA);
+
+                    // Multiply every MR-strip of the A block with every NR-strip of the B block
+                    for(int jr = 0; jr < nc; jr += NR)
+                    {
+                        for(int ir = 0; ir < mc; ir += MR)
+                        {
+                            microKernel(kc, packedA, ir * kc, packedB, jr * kc, C,
+                                    ic + ir, jc + jr, Math.min(MR, mc - ir), Math.min(NR, nc - jr), tile);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Pack the block A[row .. row + mc, col .. col + kc) into MR-high strips, each strip stored
+     * k-major: strip[k * MR + r] = A[row + strip_row + r][col + k].
+     * */
+    private static void packA(DenseMatrix A, int row, int col, int mc, int kc, double[] packed)
+    {
+        double[] a = A.data;
+        int p = 0;
+        for(int ir = 0; ir < mc; ir += MR)
+        {
+            int rows = Math.min(MR, mc - ir);
+            for(int k = 0; k < kc; k++)
+            {
+                for(int r = 0; r < MR; r++)
+                    packed[p++] = (r < rows) ? a[A.offset + (row + ir + r) * A.stride + col + k] : 0.0;
+            }
+        }
+    }
+
+    /**
+     * Pack the block B[row .. row + kc, col .. col + nc) into NR-wide strips, each strip stored
+     * k-major: strip[k * NR + c] = B[row + k][col + strip_col + c].
+     * */
+    private static void packB(DenseMatrix B, int row, int col, int kc, int nc, double[] packed)
+    {
+        double[] b = B.data;
+        int p = 0;
+        for(int jr = 0; jr < nc; jr += NR)
+        {
+            int cols = Math.min(NR, nc - jr);
+            for(int k = 0; k < kc; k++)
+            {
+                int bRow = B.offset + (row + k) * B.stride + col + jr;
+                for(int c = 0; c < NR; c++)
+                    packed[p++] = (c < cols) ? b[bRow + c] : 0.0;
+            }
+        }
+    }
+
+    /**
+     * MR x NR micro-kernel, the 16 partial sums of the tile live in locals (registers) for the
+     * whole shared dimension and are added to C once at the end.
+     * */
+    private static void microKernel(int kc, double[] a, int aOff, double[] b, int bOff,
+                                    DenseMatrix C, int row, int col, int rows, int cols, double[] tile)
+    {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+
+        for(int k = 0; k < kc; k++)
+        {
+            int ak = aOff + k * MR, bk = bOff + k * NR;
+            double a0 = a[ak], a1 = a[ak + 1], a2 = a[ak + 2], a3 = a[ak + 3];
+            double b0 = b[bk], b1 = b[bk + 1], b2 = b[bk + 2], b3 = b[bk + 3];
+
+            c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+            c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+            c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+            c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+        }
+
+        double[] c = C.data;
+        if(rows == MR && cols == NR)
+        {
+            int r0 = C.offset + row * C.stride + col;
+            int r1 = r0 + C.stride, r2 = r1 + C.stride, r3 = r2 + C.stride;
+            c[r0] += c00; c[r0 + 1] += c01; c[r0 + 2] += c02; c[r0 + 3] += c03;
+            c[r1] += c10; c[r1 + 1] += c11; c[r1 + 2] += c12; c[r1 + 3] += c13;
+            c[r2] += c20; c[r2 + 1] += c21; c[r2 + 2] += c22; c[r2 + 3] += c23;
+            c[r3] += c30; c[r3 + 1] += c31; c[r3 + 2] += c32; c[r3 + 3] += c33;
+            return;
+        }
+
+        // Edge tile, write back only the valid part
+        tile[0] = c00; tile[1] = c01; tile[2] = c02; tile[3] = c03;
+        tile[4] = c10; tile[5] = c11; tile[6] = c12; tile[7] = c13;
+        tile[8] = c20; tile[9] = c21; tile[10] = c22; tile[11] = c23;
+        tile[12] = c30; tile[13] = c31; tile[14] = c32; tile[15] = c33;
+        for(int r = 0; r < rows; r++)
+        {
+            int cRow = C.offset + (row + r) * C.stride + col;
+            for(int j = 0; j < cols; j++)
+                c[cRow + j] += tile[r * NR + j];
+        }
+    }
+
+    private static int roundUp(int n, int multiple)
+    {
+        return (n + multiple - 1) / multiple * multiple;
+    }
+}
@@ -0,0 +1,576 @@
+package com.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact binary dataset, used to hand the preprocessed data to the model without printing and
+ * re-parsing text. The last column is the label. The features are stored as one row-major block of
+ * little-endian float64 values, the layout of DenseMatrix, and the label as a contiguous column after
+ * it, so a reader memory-maps the file and loads X and y with one bulk copy each.
+ *
+ * Layout (little-endian):
+ *
+ *  magic    4 bytes "LRCD"
+ *  version  int
+ *  dtype    int, DTYPE_FLOAT64
+ *  rows     long
+ *  cols     int
+ *  names    cols x (int length, UTF-8 bytes)
+ *  padding  zeros up to a multiple of 8 bytes
+ *  features rows x (cols - 1) float64, row after row
+ *  label    rows float64
+ *
+ * @author Angel Cruz
+ * */
+public class ColumnarDataset implements AutoCloseable {
+    static final byte[] MAGIC = {'L', 'R', 'C', 'D'};
+    /* Version 1 stored every column on its own, it is no longer read */
+    static final int VERSION = 2;
+    public static final int DTYPE_FLOAT64 = 1;
+    /* File extension of the columnar datasets */
+    public static final String EXTENSION = ".lrcd";
+
+    private final FileChannel channel;
+    private final String[] names;
+    private final long rows;
+    private final long dataOffset;
+    /* Mapped feature block and label column, null when the features are too large to be mapped at once */
+    private final DoubleBuffer features, labels;
+
+    private ColumnarDataset(FileChannel channel, String[] names, long rows, long dataOffset, DoubleBuffer features, DoubleBuffer labels)
+    {
+        this.channel = channel;
+        this.names = names;
+        this.rows = rows;
+        this.dataOffset = dataOffset;
+        this.features = features;
+        this.labels = labels;
+    }
+
+    /**
+     * Method to write a dataset. The file is written next to its final path and then moved in place,
+     * so readers never see a partially written file.
+     *
+     * @param path  Destination file
+     * @param names Name of every column
+     * @param data  Samples, one row per sample and one column per name
+     * */
+    public static void write(Path path, String[] names, DenseMatrix data) throws IOException
+    {
+        if(names.length != data.cols)
+            throw new IllegalArgumentException(names.length + " column names for " + data.cols + " columns.");
+
+        try(Writer writer = new Writer(path, names, data.rows))
+        {
+            double[] row = new double[data.cols];
+            for(int i = 0; i < data.rows; i++)
+            {
+                System.arraycopy(data.data, data.offset + i * data.stride, row, 0, data.cols);
+                writer.append(row);
+            }
+        }
+    }
+
+    /**
+     * Method to convert a dataset read block by block, e.g. CsvDataset.blocks(csv), in bounded memory.
+     * The source is read twice, once to count the rows and once to write them.
+     *
+     * @param path       Destination file
+     * @param names      Name of every column, the features followed by the label
+     * @param source     Rows to write, the source is not closed
+     * @param block_rows Rows held in memory at once
+     * */
+    public static void write(Path path, String[] names, RowBlockSource source, int block_rows) throws IOException
+    {
+        int d = source.features();
+        if(names.length != d + 1)
+            throw new IllegalArgumentException(names.length + " column names for " + (d + 1) + " columns.");
+
+        DenseMatrix X = new DenseMatrix(block_rows, d), y = new DenseMatrix(block_rows, 1);
+        long rows = 0;
+        int n;
+        source.reset();
+        while((n = source.next(X, y)) > 0)
+            rows += n;
+
+        source.reset();
+        try(Writer writer = new Writer(path, names, rows))
+        {
+            double[] row = new double[d + 1];
+            while((n = source.next(X, y)) > 0)
+            {
+                for(int i = 0; i < n; i++)
+                {
+                    System.arraycopy(X.data, X.index(i, 0), row, 0, d);
+                    row[d] = y.data[y.index(i, 0)];
+                    writer.append(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streaming writer, the rows are appended one at a time through a buffer for the feature block and
+     * one for the label column, so a dataset can be written without holding it in memory. The number of
+     * rows has to be known up front, it fixes the position of the label column in the file.
+     * */
+    public static final class Writer implements AutoCloseable {
+        /* Size of the buffer of every column */
+        static final int BUFFER_BYTES = 1 << 16;
+
+        private final Path path;
+        private final Path tmp;
+        private final FileChannel out;
+        private final long rows;
+        private final int cols;
+        /* Buffers of the feature block and of the label column, and where each one starts in the file */
+        private final ByteBuffer[] buffers;
+        private final long[] starts;
+        private final long[] flushed;
+        private long appended = 0;
+        private boolean aborted = false;
+
+        /**
+         * @param path  Destination file
+         * @param names Name of every column, the label last
+         * @param rows  Exact number of rows that will be appended
+         * */
+        public Writer(Path path, String[] names, long rows) throws IOException
+        {
+            if(names.length == 0)
+                throw new IllegalArgumentException("A dataset needs at least the label column.");
+            this.path = path;
+            this.tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            this.rows = rows;
+            this.out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+
+            ByteBuffer header = header(names, rows);
+            long dataOffset = header.remaining();
+            try
+            {
+                writeFully(out, header, 0);
+            }
+            catch (IOException e)
+            {
+                out.close();
+                throw e;
+            }
+
+            this.cols = names.length;
+            this.starts = new long[] {dataOffset, dataOffset + rows * (cols - 1) * Double.BYTES};
+            this.buffers = new ByteBuffer[2];
+            this.flushed = new long[2];
+            for(int k = 0; k < 2; k++)
+                buffers[k] = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Method to append a row, one value per column.
+         * */
+        public void append(double... row) throws IOException
+        {
+            if(row.length != cols)
+                throw new IllegalArgumentException(row.length + " values for " + cols + " columns.");
+            if(appended == rows)
+                throw new IOException("More rows than the " + rows + " declared.");
+
+            ByteBuffer features = buffers[0];
+            for(int j = 0; j < cols - 1; j++)
+            {
+                if(!features.hasRemaining())
+                    flush(0);
+                features.putDouble(row[j]);
+            }
+            if(!buffers[1].hasRemaining())
+                flush(1);
+            buffers[1].putDouble(row[cols - 1]);
+            appended++;
+        }
+
+        private void flush(int k) throws IOException
+        {
+            ByteBuffer buffer = buffers[k];
+            buffer.flip();
+            long position = starts[k] + flushed[k];
+            flushed[k] += buffer.remaining();
+            writeFully(out, buffer, position);
+            buffer.clear();
+        }
+
+        /**
+         * Method to finish the file and move it to its final path. When fewer rows than declared were
+         * appended the partial file is deleted instead.
+         * */
+        @Override
+        public void close() throws IOException
+        {
+            if(aborted)
+                return;
+            try
+            {
+                for(int k = 0; k < buffers.length; k++)
+                    flush(k);
+                out.force(false);
+            }
+            finally
+            {
+                out.close();
+            }
+
+            if(appended != rows)
+            {
+                Files.deleteIfExists(tmp);
+                throw new IOException("Only " + appended + " of the " + rows + " declared rows were written.");
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Method to give up the file, e.g. when its source turned out to be invalid. The partial file is
+         * deleted, the destination is left untouched and close does nothing.
+         * */
+        public void abort() throws IOException
+        {
+            if(aborted)
+                return;
+            aborted = true;
+            try
+            {
+                out.close();
+            }
+            finally
+            {
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /**
+     * Method to open a dataset. The feature block and the label column are memory-mapped, nothing is
+     * read until it is used. Feature blocks larger than 2GB cannot be mapped, such datasets can only be
+     * read through blocks().
+     *
+     * @param path Dataset file
+     * */
+    public static ColumnarDataset open(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            // Fixed part of the header
+            ByteBuffer fixed = readFully(channel, 0, 24);
+            byte[] magic = new byte[4];
+            fixed.get(magic);
+            if(!Arrays.equals(magic, MAGIC))
+                throw new IOException(path + " is not a columnar dataset.");
+            int version = fixed.getInt(), dtype = fixed.getInt();
+            long rows = fixed.getLong();
+            int cols = fixed.getInt();
+            if(version != VERSION)
+                throw new IOException("Unsupported columnar dataset version " + version + ".");
+            if(dtype != DTYPE_FLOAT64)
+                throw new IOException("Unsupported columnar dataset dtype " + dtype + ".");
+            if(rows < 0 || cols < 1)
+                throw new IOException("Corrupted columnar dataset header.");
+
+            // Column names
+            String[] names = new String[cols];
+            long position = 24;
+            for(int j = 0; j < cols; j++)
+            {
+                int length = readFully(channel, position, 4).getInt();
+                byte[] name = new byte[length];
+                readFully(channel, position + 4, length).get(name);
+                names[j] = new String(name, StandardCharsets.UTF_8);
+                position += 4 + length;
+            }
+            long dataOffset = align8(position);
+
+            long columnBytes = rows * Double.BYTES, featureBytes = columnBytes * (cols - 1);
+            if(channel.size() < dataOffset + featureBytes + columnBytes)
+                throw new IOException("Truncated columnar dataset, expected " + (dataOffset + featureBytes + columnBytes)
+                        + " bytes and found " + channel.size() + ".");
+            // Map the feature block and the label column, the data stays in the page cache until it is loaded
+            DoubleBuffer features = null, labels = null;
+            if(featureBytes <= Integer.MAX_VALUE)
+            {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, featureBytes);
+                features = mapped.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + featureBytes, columnBytes);
+                labels = mapped.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+            return new ColumnarDataset(channel, names, rows, dataOffset, features, labels);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int rows()
+    {
+        if(rows > Integer.MAX_VALUE)
+            throw new IllegalStateException("The dataset has " + rows + " rows, use size().");
+        return (int) rows;
+    }
+
+    /**
+     * @return Number of rows, also when it does not fit in an int.
+     * */
+    public long size()
+    {
+        return rows;
+    }
+
+    public int cols()
+    {
+        return names.length;
+    }
+
+    public String[] names()
+    {
+        return names.clone();
+    }
+
+    /**
+     * @return Read-only zero-copy view over the feature block, rows x (cols - 1) values row after row.
+     * */
+    public DoubleBuffer features()
+    {
+        mapped();
+        return features.duplicate();
+    }
+
+    /**
+     * @return Read-only zero-copy view over the label column.
+     * */
+    public DoubleBuffer labels()
+    {
+        mapped();
+        return labels.duplicate();
+    }
+
+    private void mapped()
+    {
+        if(features == null)
+            throw new IllegalStateException("Features of " + rows + " rows are too large to be mapped, use blocks().");
+    }
+
+    /**
+     * Method to copy the columns [from, to) into a row-major matrix, the layout the model trains on.
+     * The model trains on heap arrays, so the mapped data is copied once: the whole feature block and
+     * the label column are single bulk copies, any other range is one bulk copy per row.
+     * */
+    public DenseMatrix toMatrix(int from, int to)
+    {
+        int d = names.length - 1, n = to - from, N = rows();
+        if(from < 0 || from > to || to > names.length)
+            throw new IndexOutOfBoundsException("Columns [" + from + ", " + to + ") out of " + names.length + ".");
+        mapped();
+        DenseMatrix M = new DenseMatrix(N, n);
+
+        if(from == 0 && to == d)
+        {
+            features.get(0, M.data, 0, N * d);
+            return M;
+        }
+        if(from == d && n == 1)
+        {
+            labels.get(0, M.data, 0, N);
+            return M;
+        }
+
+        int width = Math.min(to, d) - from;
+        for(int i = 0; i < N; i++)
+        {
+            if(width > 0)
+                features.get(i * d + from, M.data, i * n, width);
+            if(to > d)
+                M.data[i * n + n - 1] = labels.get(i);
+        }
+        return M;
+    }
+
+    /**
+     * Method to read the dataset block by block, the last column being the label. Every block is read
+     * from the file with positional reads into one reused buffer, so the memory used is bounded by the
+     * block size and the dataset may be larger than the heap (or than what can be mapped). The source
+     * shares the file of this dataset, it must not be used after the dataset is closed.
+     * */
+    public RowBlockSource blocks()
+    {
+        if(names.length < 2)
+            throw new IllegalStateException("The dataset needs at least one feature and the label.");
+
+        return new RowBlockSource() {
+            long position = 0;
+            ByteBuffer buffer;
+
+            @Override
+            public int features()
+            {
+                return names.length - 1;
+            }
+
+            @Override
+            public void reset()
+            {
+                position = 0;
+            }
+
+            @Override
+            public int next(DenseMatrix X, DenseMatrix y) throws IOException
+            {
+                int d = names.length - 1;
+                if(X.cols != d || y.cols != 1 || y.rows < X.rows)
+                    throw new IllegalArgumentException("Blocks of " + X + " and " + y + " for " + d + " features.");
+
+                int n = (int) Math.min(X.rows, rows - position);
+                if(n <= 0)
+                    return 0;
+                if(buffer == null || buffer.capacity() < n * d * Double.BYTES)
+                    buffer = ByteBuffer.allocateDirect(X.rows * d * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+                // The rows [position, position + n) are one contiguous range of the feature block
+                DoubleBuffer block = read(dataOffset + position * d * Double.BYTES, n * d);
+                if(X.isContiguous())
+                    block.get(X.data, X.offset, n * d);
+                else
+                {
+                    for(int i = 0; i < n; i++)
+                        block.get(X.data, X.index(i, 0), d);
+                }
+
+                // and of the label column
+                DoubleBuffer column = read(dataOffset + (rows * d + position) * Double.BYTES, n);
+                for(int i = 0; i < n; i++)
+                    y.set(i, 0, column.get(i));
+
+                position += n;
+                return n;
+            }
+
+            private DoubleBuffer read(long offset, int values) throws IOException
+            {
+                buffer.clear().limit(values * Double.BYTES);
+                while(buffer.hasRemaining())
+                {
+                    if(channel.read(buffer, offset + buffer.position()) < 0)
+                        throw new IOException("Unexpected end of the columnar dataset.");
+                }
+                buffer.flip();
+                return buffer.asDoubleBuffer();
+            }
+
+            @Override
+            public void close()
+            {}
+        };
+    }
+
+    /**
+     * Method to open a columnar file only to read it block by block, closing the source closes the file.
+     * */
+    public static RowBlockSource blocks(Path path) throws IOException
+    {
+        ColumnarDataset dataset = open(path);
+        RowBlockSource source;
+        try
+        {
+            source = dataset.blocks();
+        }
+        catch (RuntimeException e)
+        {
+            dataset.close();
+            throw e;
+        }
+
+        return new RowBlockSource() {
+            @Override
+            public int features()
+            {
+                return source.features();
+            }
+
+            @Override
+            public void reset() throws IOException
+            {
+                source.reset();
+            }
+
+            @Override
+            public int next(DenseMatrix X, DenseMatrix y) throws IOException
+            {
+                return source.next(X, y);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                dataset.close();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        // The mappings stay valid until they are garbage collected, closing only releases the descriptor
+        channel.close();
+    }
+
+    private static ByteBuffer header(String[] names, long rows)
+    {
+        byte[][] encoded = new byte[names.length][];
+        int size = 24;
+        for(int j = 0; j < names.length; j++)
+        {
+            encoded[j] = names[j].getBytes(StandardCharsets.UTF_8);
+            size += 4 + encoded[j].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate((int) align8(size)).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(VERSION).putInt(DTYPE_FLOAT64).putLong(rows).putInt(names.length);
+        for(byte[] name : encoded)
+            header.putInt(name.length).put(name);
+
+        header.position(0);
+        return header;
+    }
+
+    private static long align8(long position)
+    {
+        return (position + 7) & ~7L;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException
+    {
+        while(buffer.hasRemaining())
+            position += out.write(buffer, position);
+    }
+
+    private static ByteBuffer readFully(FileChannel in, long position, int length) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while(buffer.hasRemaining())
+        {
+            if(in.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of the columnar dataset.");
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
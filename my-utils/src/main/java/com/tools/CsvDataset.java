@@ -0,0 +1,459 @@
+package com.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Numerical csv dataset parsed into one primitive array per column.
+ *
+ * The file is memory-mapped and split into newline-aligned chunks that are parsed in parallel. Every
+ * chunk scans its bytes once, parses the fields with DoubleParser straight from the mapping and
+ * appends them to its own primitive columns. The chunks are then concatenated in file order. No
+ * String, boxed Double or per-row object is created, so loading is bound by the disk or the page
+ * cache rather than by the parser.
+ *
+ * The first line is the header. Every other non-empty line must have one number per column.
+ *
+ * @author Angel Cruz
+ * */
+public class CsvDataset {
+    /* Smallest chunk worth a task of its own */
+    static final long MIN_CHUNK_BYTES = 1 << 20;
+    /* Largest chunk, a chunk is mapped at once */
+    static final long MAX_CHUNK_BYTES = 1 << 30;
+    /* Chunks per core, so uneven chunks still balance */
+    static final int CHUNKS_PER_THREAD = 4;
+    /* Window of a chunk copied at once to be scanned */
+    static final int WINDOW_BYTES = 1 << 16;
+
+    private final String[] names;
+    private final double[][] columns;
+    private final int rows;
+
+    private CsvDataset(String[] names, double[][] columns, int rows)
+    {
+        this.names = names;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Method to parse a csv file with a header, using every core.
+     *
+     * @param path Dataset file
+     * */
+    public static CsvDataset read(Path path) throws IOException
+    {
+        return read(path, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Method to parse a csv file with a header.
+     *
+     * @param path        Dataset file
+     * @param parallelism Number of cores to split the file for
+     * */
+    public static CsvDataset read(Path path, int parallelism) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+
+            // Header, the names of the columns
+            long headerEnd = nextLine(channel, 0, size);
+            String[] names = readHeader(path, channel, headerEnd);
+
+            // Newline-aligned chunks of the body
+            long body = size - headerEnd;
+            int chunks = (int) Math.max(Math.min(body / MIN_CHUNK_BYTES, (long) Math.max(1, parallelism) * CHUNKS_PER_THREAD),
+                    (body + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+            chunks = Math.max(1, chunks);
+
+            Chunk[] parts = new Chunk[chunks];
+            long start = headerEnd;
+            for(int k = 0; k < chunks; k++)
+            {
+                long end = (k == chunks - 1) ? size : Math.max(start, nextLine(channel, headerEnd + body * (k + 1) / chunks, size));
+                parts[k] = new Chunk(start, end, names.length);
+                start = end;
+            }
+
+            // Parse every chunk on the common pool
+            Arrays.stream(parts).parallel().forEach(part -> part.parse(channel));
+            for(Chunk part : parts)
+            {
+                if(part.error != null)
+                    throw new IOException(path + ": " + part.error.getMessage(), part.error);
+            }
+
+            // Concatenate the chunks in file order
+            long total = 0;
+            for(Chunk part : parts)
+                total += part.rows;
+            if(total > Integer.MAX_VALUE - 8)
+                throw new IOException(path + " has too many rows, " + total + ".");
+
+            double[][] columns = new double[names.length][];
+            if(chunks == 1)
+            {
+                for(int j = 0; j < names.length; j++)
+                {
+                    double[] column = parts[0].columns[j];
+                    columns[j] = (column == null) ? new double[0]
+                            : (column.length == parts[0].rows) ? column : Arrays.copyOf(column, parts[0].rows);
+                }
+            }
+            else
+            {
+                for(int j = 0; j < names.length; j++)
+                {
+                    columns[j] = new double[(int) total];
+                    int offset = 0;
+                    for(Chunk part : parts)
+                    {
+                        if(part.rows == 0)
+                            continue;
+                        System.arraycopy(part.columns[j], 0, columns[j], offset, part.rows);
+                        offset += part.rows;
+                    }
+                }
+            }
+            return new CsvDataset(names, columns, (int) total);
+        }
+    }
+
+    /**
+     * Method to stream a csv file with a header block by block, the last column being the label. Only
+     * a window of the file and one row are held in memory, whatever the size of the file.
+     *
+     * @param path Dataset file
+     * */
+    public static RowBlockSource blocks(Path path) throws IOException
+    {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try
+        {
+            long headerEnd = nextLine(channel, 0, channel.size());
+            String[] names = readHeader(path, channel, headerEnd);
+            if(names.length < 2)
+                throw new IOException(path + " needs at least one feature and the label.");
+            return new Blocks(channel, headerEnd, names.length);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int rows()
+    {
+        return rows;
+    }
+
+    public int cols()
+    {
+        return names.length;
+    }
+
+    public String[] names()
+    {
+        return names.clone();
+    }
+
+    /**
+     * @return The values of the column j, shared with this dataset.
+     * */
+    public double[] column(int j)
+    {
+        return columns[j];
+    }
+
+    /**
+     * Method to copy the columns [from, to) into a row-major matrix, the layout the model trains on.
+     * */
+    public DenseMatrix toMatrix(int from, int to)
+    {
+        int n = to - from;
+        if(n == 1)
+            return new DenseMatrix(columns[from].clone(), rows, 1);
+
+        DenseMatrix M = new DenseMatrix(rows, n);
+        for(int j = 0; j < n; j++)
+        {
+            double[] column = columns[from + j];
+            for(int i = 0; i < rows; i++)
+                M.data[i * n + j] = column[i];
+        }
+        return M;
+    }
+
+    private static String[] readHeader(Path path, FileChannel channel, long headerEnd) throws IOException
+    {
+        ByteBuffer headerBytes = ByteBuffer.allocate((int) Math.min(headerEnd, Integer.MAX_VALUE));
+        while(headerBytes.hasRemaining() && channel.read(headerBytes, headerBytes.position()) >= 0);
+        String header = new String(headerBytes.array(), 0, headerBytes.position(), StandardCharsets.UTF_8).strip();
+        if(header.isEmpty())
+            throw new IOException(path + " has no header.");
+
+        String[] names = header.split(",");
+        for(int j = 0; j < names.length; j++)
+            names[j] = names[j].strip();
+        return names;
+    }
+
+    /**
+     * @return Position right after the first newline at or after position, or size when there is none.
+     * */
+    private static long nextLine(FileChannel channel, long position, long size) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while(position < size)
+        {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if(read <= 0)
+                break;
+            for(int i = 0; i < read; i++)
+            {
+                if(buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Sequential block reader of the body of a csv file. The file is read window by window into a small
+     * array, a line cut by the end of a window is moved to the front before reading the next one.
+     * */
+    private static final class Blocks implements RowBlockSource {
+        final FileChannel channel;
+        final long headerEnd;
+        final double[] row;
+        byte[] buffer = new byte[WINDOW_BYTES];
+        int filled = 0, i = 0;
+        long position;
+        boolean eof = false;
+
+        Blocks(FileChannel channel, long headerEnd, int cols)
+        {
+            this.channel = channel;
+            this.headerEnd = headerEnd;
+            this.row = new double[cols];
+            this.position = headerEnd;
+        }
+
+        @Override
+        public int features()
+        {
+            return row.length - 1;
+        }
+
+        @Override
+        public void reset()
+        {
+            position = headerEnd;
+            filled = 0;
+            i = 0;
+            eof = false;
+        }
+
+        @Override
+        public int next(DenseMatrix X, DenseMatrix y) throws IOException
+        {
+            int d = row.length - 1, n = 0;
+            if(X.cols != d || y.cols != 1 || y.rows < X.rows)
+                throw new IllegalArgumentException("Blocks of " + X + " and " + y + " for " + d + " features.");
+
+            while(n < X.rows)
+            {
+                int lineEnd = i;
+                while(lineEnd < filled && buffer[lineEnd] != '\n')
+                    lineEnd++;
+
+                if(lineEnd == filled && !eof)
+                {
+                    int keep = filled - i;
+                    if(keep == buffer.length)
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    System.arraycopy(buffer, i, buffer, 0, keep);
+                    int read = channel.read(ByteBuffer.wrap(buffer, keep, buffer.length - keep), position);
+                    if(read < 0)
+                        eof = true;
+                    else
+                        position += read;
+                    filled = keep + Math.max(read, 0);
+                    i = 0;
+                    continue;
+                }
+                if(i >= filled)
+                    break;
+
+                if(!isBlankLine(buffer, i, lineEnd))
+                {
+                    parseRow(buffer, i, lineEnd, position - filled, row);
+                    System.arraycopy(row, 0, X.data, X.index(n, 0), d);
+                    y.set(n++, 0, row[d]);
+                }
+                i = lineEnd + 1;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Block of whole lines [start, end) of the file, parsed into its own growable columns.
+     * */
+    private static final class Chunk {
+        final long start, end;
+        final double[][] columns;
+        int rows = 0, capacity = 0;
+        double[] row;
+        Exception error;
+
+        Chunk(long start, long end, int cols)
+        {
+            this.start = start;
+            this.end = end;
+            this.columns = new double[cols][];
+        }
+
+        void parse(FileChannel channel)
+        {
+            try
+            {
+                int length = (int) (end - start);
+                MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+
+                // The mapping is copied window by window into a small array, which is scanned much faster
+                // than the mapped buffer itself. A line cut by the end of a window is moved to the front.
+                byte[] buffer = new byte[(int) Math.min(WINDOW_BYTES, Math.max(length, 1))];
+                int copied = 0, filled = 0, i = 0;
+                while(true)
+                {
+                    int lineEnd = i;
+                    while(lineEnd < filled && buffer[lineEnd] != '\n')
+                        lineEnd++;
+
+                    if(lineEnd == filled && copied < length)
+                    {
+                        int keep = filled - i;
+                        if(keep == buffer.length)
+                            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        System.arraycopy(buffer, i, buffer, 0, keep);
+                        int n = Math.min(buffer.length - keep, length - copied);
+                        in.get(copied, buffer, keep, n);
+                        copied += n;
+                        filled = keep + n;
+                        i = 0;
+                        continue;
+                    }
+                    if(i >= filled)
+                        break;
+
+                    parseLine(buffer, i, lineEnd, start + copied - filled, length);
+                    i = lineEnd + 1;
+                }
+            }
+            catch (Exception e)
+            {
+                error = e;
+            }
+        }
+
+        /**
+         * Method to parse the line buffer[i, lineEnd) into the next row.
+         *
+         * @param base   Position in the file of buffer[0], for the error messages
+         * @param length Length of the chunk, to estimate the number of rows
+         * */
+        private void parseLine(byte[] buffer, int i, int lineEnd, long base, int length) throws IOException
+        {
+            // Skip empty lines
+            if(isBlankLine(buffer, i, lineEnd))
+                return;
+
+            int cols = columns.length;
+            if(rows == capacity)
+            {
+                // The first line estimates the number of rows, then the columns grow when lines get shorter
+                capacity = (int) Math.min(Integer.MAX_VALUE - 8, (capacity == 0)
+                        ? length / (long) (lineEnd - i + 1) + 16 : capacity + (capacity >> 1) + 16);
+                for(int j = 0; j < cols; j++)
+                    columns[j] = (columns[j] == null) ? new double[capacity] : Arrays.copyOf(columns[j], capacity);
+                row = new double[cols];
+            }
+
+            parseRow(buffer, i, lineEnd, base, row);
+            for(int j = 0; j < cols; j++)
+                columns[j][rows] = row[j];
+            rows++;
+        }
+    }
+
+    /**
+     * Method to parse the fields of the line buffer[i, lineEnd) into row, one number per column.
+     *
+     * @param base Position in the file of buffer[0], for the error messages
+     * */
+    static void parseRow(byte[] buffer, int i, int lineEnd, long base, double[] row) throws IOException
+    {
+        int cols = row.length;
+        for(int j = 0; j < cols; j++)
+        {
+            // Field [from, to) without the surrounding blanks
+            int from = i;
+            while(i < lineEnd && buffer[i] != ',')
+                i++;
+            int to = i;
+            while(from < to && isBlank(buffer[from]))
+                from++;
+            while(to > from && isBlank(buffer[to - 1]))
+                to--;
+            if(from == to)
+                throw new IOException("Missing value in column " + (j + 1) + " at byte " + (base + from) + ".");
+
+            try
+            {
+                row[j] = DoubleParser.parse(buffer, from, to);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IOException("Invalid number at byte " + (base + from) + ".", e);
+            }
+
+            boolean last = j == cols - 1;
+            if(last && i < lineEnd)
+                throw new IOException("More than " + cols + " values at byte " + (base + i) + ".");
+            if(!last && i == lineEnd)
+                throw new IOException("Only " + (j + 1) + " of " + cols + " values at byte " + (base + i) + ".");
+            i++;
+        }
+    }
+
+    static boolean isBlankLine(byte[] buffer, int i, int lineEnd)
+    {
+        while(i < lineEnd && isBlank(buffer[i]))
+            i++;
+        return i == lineEnd;
+    }
+
+    private static boolean isBlank(byte c)
+    {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
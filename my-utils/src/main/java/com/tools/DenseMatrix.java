@@ -0,0 +1,181 @@
+package com.tools;
+
+/**
+ * Dense matrix stored in a single contiguous row-major double[]. The element (i, j) lives at
+ * data[offset + i * stride + j], so a matrix can also be a view (a block of rows and/or columns)
+ * over the storage of another one without copying it.
+ *
+ * @author Angel Cruz
+ * */
+public class DenseMatrix {
+    /* Backing storage, shared between a matrix and its views */
+    public final double[] data;
+    /* Number of rows and columns of the matrix */
+    public final int rows, cols;
+    /* Distance between the first elements of two consecutive rows */
+    public final int stride;
+    /* Position of the element (0, 0) inside data */
+    public final int offset;
+
+    /**
+     * Constructor to allocate a new zero-filled matrix.
+     *
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * */
+    public DenseMatrix(int rows, int cols)
+    {
+        this(new double[checkSize(rows, cols)], 0, rows, cols, cols);
+    }
+
+    /**
+     * Constructor to wrap an existing row-major array (no copy).
+     *
+     * @param data Row-major values, at least rows * cols long
+     * @param rows Number of rows
+     * @param cols Number of columns
+     * */
+    public DenseMatrix(double[] data, int rows, int cols)
+    {
+        this(data, 0, rows, cols, cols);
+    }
+
+    /**
+     * Main constructor, used to build views over a shared storage.
+     *
+     * @param data   Backing storage
+     * @param offset Position of the element (0, 0)
+     * @param rows   Number of rows
+     * @param cols   Number of columns
+     * @param stride Distance between two consecutive rows
+     * */
+    public DenseMatrix(double[] data, int offset, int rows, int cols, int stride)
+    {
+        if(rows < 0 || cols < 0 || offset < 0 || stride < cols)
+            throw new IllegalArgumentException("Invalid matrix layout. rows " + rows + ", cols " + cols
+                    + ", offset " + offset + ", stride " + stride + ".");
+        if(rows > 0 && cols > 0 && offset + (long) (rows - 1) * stride + cols > data.length)
+            throw new IllegalArgumentException("Storage too small for a " + rows + " x " + cols + " matrix.");
+
+        this.data = data;
+        this.offset = offset;
+        this.rows = rows;
+        this.cols = cols;
+        this.stride = stride;
+    }
+
+    private static int checkSize(int rows, int cols)
+    {
+        long size = (long) rows * cols;
+        if(rows < 0 || cols < 0 || size > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Invalid matrix size " + rows + " x " + cols + ".");
+        return (int) size;
+    }
+
+    /**
+     * Method to copy a jagged 2D-array into a new contiguous matrix.
+     *
+     * @param A Jagged array, every row must have the same length
+     * */
+    public static DenseMatrix of(double[][] A)
+    {
+        int ROWS = A.length, COLUMNS = ROWS == 0 ? 0 : A[0].length;
+        DenseMatrix M = new DenseMatrix(ROWS, COLUMNS);
+
+        for(int i = 0; i < ROWS; i++)
+        {
+            if(A[i].length != COLUMNS)
+                throw new IllegalArgumentException("Row " + i + " has " + A[i].length + " columns, expected " + COLUMNS + ".");
+            System.arraycopy(A[i], 0, M.data, i * COLUMNS, COLUMNS);
+        }
+        return M;
+    }
+
+    /**
+     * Method to copy the matrix back into a jagged 2D-array.
+     * */
+    public double[][] toArray()
+    {
+        double[][] A = new double[rows][cols];
+        for(int i = 0; i < rows; i++)
+            System.arraycopy(data, offset + i * stride, A[i], 0, cols);
+
+        return A;
+    }
+
+    /* Position of the element (i, j) inside data */
+    public int index(int i, int j)
+    {
+        return offset + i * stride + j;
+    }
+
+    public double get(int i, int j)
+    {
+        return data[offset + i * stride + j];
+    }
+
+    public void set(int i, int j, double value)
+    {
+        data[offset + i * stride + j] = value;
+    }
+
+    /**
+     * @return true when the rows are stored back to back, so the matrix can be walked as a flat array.
+     * */
+    public boolean isContiguous()
+    {
+        return stride == cols || rows <= 1;
+    }
+
+    /**
+     * Method to get a view over a rectangular block of the matrix. The view shares the storage,
+     * writes through it are visible in this matrix.
+     *
+     * @param row  First row of the block
+     * @param col  First column of the block
+     * @param rows Number of rows of the block
+     * @param cols Number of columns of the block
+     * */
+    public DenseMatrix view(int row, int col, int rows, int cols)
+    {
+        if(row < 0 || col < 0 || rows < 0 || cols < 0 || row + rows > this.rows || col + cols > this.cols)
+            throw new IndexOutOfBoundsException("Block [" + row + ", " + col + "] " + rows + " x " + cols
+                    + " out of a " + this.rows + " x " + this.cols + " matrix.");
+
+        return new DenseMatrix(data, offset + row * stride + col, rows, cols, stride);
+    }
+
+    /**
+     * Method to get a view over the rows [from, to).
+     * */
+    public DenseMatrix slice(int from, int to)
+    {
+        return view(from, 0, to - from, cols);
+    }
+
+    /**
+     * Method to get a N x 1 view over the column j.
+     * */
+    public DenseMatrix column(int j)
+    {
+        return view(0, j, rows, 1);
+    }
+
+    /**
+     * Method to get a contiguous deep copy of the matrix.
+     * */
+    public DenseMatrix copy()
+    {
+        DenseMatrix C = new DenseMatrix(rows, cols);
+        for(int i = 0; i < rows; i++)
+            System.arraycopy(data, offset + i * stride, C.data, i * cols, cols);
+
+        return C;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DenseMatrix[" + rows + " x " + cols + "]";
+    }
+}
@@ -0,0 +1,222 @@
+package com.tools;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parser of decimal doubles straight from ASCII bytes, without building a String per value.
+ *
+ * The digits are accumulated in a long mantissa and a decimal exponent, then converted with:
+ *
+ *  - Clinger's fast path when the mantissa and the power of ten are both exact doubles (one exact
+ *    multiplication or division, correctly rounded).
+ *  - The Eisel-Lemire algorithm otherwise, a 64 x 128-bit product with a table of truncated powers
+ *    of five, which either gives the correctly rounded value or reports that it cannot decide.
+ *  - Double.parseDouble for everything else: more than 19 significant digits, the undecided cases,
+ *    subnormals, overflow, NaN, Infinity and malformed input.
+ *
+ * Every path returns exactly the value Double.parseDouble would.
+ *
+ * @author Angel Cruz
+ * */
+final class DoubleParser {
+    /* Exact powers of ten as doubles, for the fast path */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /* Range of decimal exponents covered by the table */
+    static final int MIN_EXP10 = -342, MAX_EXP10 = 308;
+    /* High and low 64 bits of the normalized 128-bit approximation of 5^q */
+    private static final long[] POW5_HI = new long[MAX_EXP10 - MIN_EXP10 + 1];
+    private static final long[] POW5_LO = new long[MAX_EXP10 - MIN_EXP10 + 1];
+
+    static
+    {
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for(int q = MIN_EXP10; q <= MAX_EXP10; q++)
+        {
+            BigInteger c;
+            if(q >= 0)
+            {
+                // Truncated to the 128 most significant bits
+                c = BigInteger.valueOf(5).pow(q);
+                int bits = c.bitLength();
+                c = bits > 128 ? c.shiftRight(bits - 128) : c.shiftLeft(128 - bits);
+            }
+            else
+            {
+                // Reciprocal, as in the reference tables of the algorithm
+                BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+                int z = power5.bitLength();
+                int b = (q >= -27) ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(b).divide(power5).add(BigInteger.ONE);
+                int bits = c.bitLength();
+                if(bits > 128)
+                    c = c.shiftRight(bits - 128);
+            }
+            POW5_HI[q - MIN_EXP10] = c.shiftRight(64).longValue();
+            POW5_LO[q - MIN_EXP10] = c.and(mask).longValue();
+        }
+    }
+
+    private DoubleParser()
+    {}
+
+    /**
+     * Method to parse the ASCII bytes [from, to) of an array.
+     *
+     * @throws NumberFormatException when the bytes are not a number
+     * */
+    static double parse(byte[] in, int from, int to)
+    {
+        int i = from;
+        boolean negative = false;
+        if(i < to && (in[i] == '-' || in[i] == '+'))
+        {
+            negative = in[i] == '-';
+            i++;
+        }
+
+        // Significant digits, the decimal point only moves the exponent
+        long mantissa = 0;
+        int digits = 0, exp10 = 0;
+        boolean any = false;
+        for(; i < to; i++)
+        {
+            int c = in[i] - '0';
+            if(c < 0 || c > 9)
+                break;
+            any = true;
+            if(mantissa == 0 && c == 0)
+                continue;
+            if(++digits > 19)
+                return slow(in, from, to);
+            mantissa = mantissa * 10 + c;
+        }
+        if(i < to && in[i] == '.')
+        {
+            for(i++; i < to; i++)
+            {
+                int c = in[i] - '0';
+                if(c < 0 || c > 9)
+                    break;
+                any = true;
+                exp10--;
+                if(mantissa == 0 && c == 0)
+                    continue;
+                if(++digits > 19)
+                    return slow(in, from, to);
+                mantissa = mantissa * 10 + c;
+            }
+        }
+        if(!any)
+            return slow(in, from, to);
+
+        if(i < to && (in[i] | 0x20) == 'e')
+        {
+            boolean negativeExp = false;
+            if(++i < to && (in[i] == '-' || in[i] == '+'))
+                negativeExp = in[i++] == '-';
+
+            int exponent = 0;
+            boolean expDigits = false;
+            for(; i < to; i++)
+            {
+                int c = in[i] - '0';
+                if(c < 0 || c > 9)
+                    break;
+                expDigits = true;
+                if(exponent < 100000)
+                    exponent = exponent * 10 + c;
+            }
+            if(!expDigits)
+                return slow(in, from, to);
+            exp10 += negativeExp ? -exponent : exponent;
+        }
+        if(i != to)
+            return slow(in, from, to);
+
+        if(mantissa == 0)
+            return negative ? -0.0 : 0.0;
+
+        // Clinger's fast path, both operands are exact
+        if(mantissa <= (1L << 53) && mantissa > 0 && exp10 >= -22 && exp10 <= 22)
+        {
+            double value = exp10 < 0 ? mantissa / POW10[-exp10] : mantissa * POW10[exp10];
+            return negative ? -value : value;
+        }
+
+        if(exp10 >= MIN_EXP10 && exp10 <= MAX_EXP10)
+        {
+            double value = eiselLemire(mantissa, exp10, negative);
+            if(!Double.isNaN(value))
+                return value;
+        }
+        return slow(in, from, to);
+    }
+
+    /**
+     * Eisel-Lemire conversion of mantissa * 10^exp10, the mantissa read as unsigned.
+     *
+     * @return The correctly rounded double, or NaN when the product is too close to a halfway point
+     *         to decide or the result is not a normal double.
+     * */
+    static double eiselLemire(long mantissa, int exp10, boolean negative)
+    {
+        // Normalization
+        int clz = Long.numberOfLeadingZeros(mantissa);
+        long man = mantissa << clz;
+        long retExp2 = ((217706L * exp10) >> 16) + 64 + 1023 - clz;
+
+        // Multiplication by the truncated power, widened with the low half when the result is ambiguous
+        int k = exp10 - MIN_EXP10;
+        long xHi = unsignedMultiplyHigh(man, POW5_HI[k]), xLo = man * POW5_HI[k];
+        if((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + man, man) < 0)
+        {
+            long yHi = unsignedMultiplyHigh(man, POW5_LO[k]), yLo = man * POW5_LO[k];
+            long mergedHi = xHi, mergedLo = xLo + yHi;
+            if(Long.compareUnsigned(mergedLo, xLo) < 0)
+                mergedHi++;
+            if((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + man, man) < 0)
+                return Double.NaN;
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+
+        // Shifting to 54 bits
+        long msb = xHi >>> 63;
+        long retMantissa = xHi >>> (int) (msb + 9);
+        retExp2 -= 1 ^ msb;
+
+        // Halfway ambiguity
+        if(xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1)
+            return Double.NaN;
+
+        // From 54 to 53 bits, rounding to even
+        retMantissa += retMantissa & 1;
+        retMantissa >>>= 1;
+        if((retMantissa >>> 53) > 0)
+        {
+            retMantissa >>>= 1;
+            retExp2++;
+        }
+        if(retExp2 <= 0 || retExp2 >= 0x7FF)
+            return Double.NaN;
+
+        long bits = (retExp2 << 52) | (retMantissa & 0x000FFFFFFFFFFFFFL);
+        if(negative)
+            bits |= 0x8000000000000000L;
+        return Double.longBitsToDouble(bits);
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y)
+    {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    private static double slow(byte[] in, int from, int to)
+    {
+        return Double.parseDouble(new String(in, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,112 @@
+package com.tools;
+
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.CoderRegistry;
+import org.apache.beam.sdk.coders.CustomCoder;
+import org.apache.beam.sdk.transforms.Combine;
+import org.apache.beam.sdk.values.KV;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Beam combiner computing the mean and the (population) standard deviation of every feature at once.
+ * Each sample is folded into a single RunningStats accumulator (count, mean and M2 per feature in
+ * primitive arrays), the partial accumulators are merged exactly, and the result is one map from the
+ * feature name to KV(mean, std), meant to be used as a single side input.
+ *
+ * @author Angel Cruz
+ * */
+public class FeatureStatsFn extends Combine.CombineFn<List<Double>, RunningStats, Map<String, KV<Double, Double>>> {
+    /* Names of the features, the first values of every sample */
+    private final ArrayList<String> features;
+
+    /**
+     * @param features Names of the features, in the order of the values of the samples
+     * */
+    public FeatureStatsFn(List<String> features)
+    {
+        this.features = new ArrayList<>(features);
+    }
+
+    @Override
+    public RunningStats createAccumulator()
+    {
+        return new RunningStats(features.size());
+    }
+
+    @Override
+    public RunningStats addInput(RunningStats stats, List<Double> sample)
+    {
+        return stats.add(sample);
+    }
+
+    @Override
+    public RunningStats mergeAccumulators(Iterable<RunningStats> accumulators)
+    {
+        RunningStats merged = createAccumulator();
+        for(RunningStats stats : accumulators)
+            merged.merge(stats);
+        return merged;
+    }
+
+    @Override
+    public Map<String, KV<Double, Double>> extractOutput(RunningStats stats)
+    {
+        Map<String, KV<Double, Double>> output = new HashMap<>();
+        for(int j = 0; j < features.size(); j++)
+            output.put(features.get(j), KV.of(stats.mean(j), stats.std(j)));
+        return output;
+    }
+
+    @Override
+    public Coder<RunningStats> getAccumulatorCoder(CoderRegistry registry, Coder<List<Double>> inputCoder)
+    {
+        return new RunningStatsCoder();
+    }
+
+    /**
+     * Compact coder of the accumulators, the count followed by the raw means and M2s, instead of
+     * the default Java serialization.
+     * */
+    static class RunningStatsCoder extends CustomCoder<RunningStats> {
+        @Override
+        public void encode(RunningStats stats, OutputStream outStream) throws IOException
+        {
+            DataOutputStream out = new DataOutputStream(outStream);
+            out.writeInt(stats.mean.length);
+            out.writeLong(stats.count);
+            for(int j = 0; j < stats.mean.length; j++)
+            {
+                out.writeDouble(stats.mean[j]);
+                out.writeDouble(stats.m2[j]);
+            }
+            out.flush();
+        }
+
+        @Override
+        public RunningStats decode(InputStream inStream) throws IOException
+        {
+            DataInputStream in = new DataInputStream(inStream);
+            RunningStats stats = new RunningStats(in.readInt());
+            stats.count = in.readLong();
+            for(int j = 0; j < stats.mean.length; j++)
+            {
+                stats.mean[j] = in.readDouble();
+                stats.m2[j] = in.readDouble();
+            }
+            return stats;
+        }
+
+        @Override
+        public void verifyDeterministic()
+        {}
+    }
+}
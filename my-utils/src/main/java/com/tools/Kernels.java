@@ -0,0 +1,61 @@
+package com.tools;
+
+/**
+ * Selection of the VectorKernels backend. The SIMD backend is used when the jdk.incubator.vector module
+ * is resolved (run the JVM with --add-modules jdk.incubator.vector) and the CPU has vector registers
+ * wider than a double, otherwise the scalar backend is used. The choice can be forced with the system
+ * property -Dcom.tools.kernels=scalar|simd.
+ *
+ * @author Angel Cruz
+ * */
+public final class Kernels {
+    /* Backend picked once at class initialization */
+    private static final VectorKernels BACKEND = select();
+
+    private Kernels()
+    {}
+
+    /**
+     * @return The backend selected at startup.
+     * */
+    public static VectorKernels get()
+    {
+        return BACKEND;
+    }
+
+    /**
+     * @return The portable scalar backend.
+     * */
+    public static VectorKernels scalar()
+    {
+        return new ScalarKernels();
+    }
+
+    /**
+     * @return The SIMD backend, or null when the Vector API is not available in this JVM.
+     * */
+    public static VectorKernels simd()
+    {
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return null;
+        try
+        {
+            // Loaded reflectively, so the Vector API classes are never touched when the module is missing
+            return (VectorKernels) Class.forName("com.tools.SimdKernels").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError | RuntimeException e)
+        {
+            return null;
+        }
+    }
+
+    private static VectorKernels select()
+    {
+        String requested = System.getProperty("com.tools.kernels", "auto");
+        if(requested.equalsIgnoreCase("scalar"))
+            return scalar();
+
+        VectorKernels simd = simd();
+        return (simd != null) ? simd : scalar();
+    }
+}
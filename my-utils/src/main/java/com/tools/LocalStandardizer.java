@@ -0,0 +1,236 @@
+package com.tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Local standardization engine, a single-machine alternative to the Beam graph of PipeLine with the
+ * same input and the same outputs (the standardized csv and the columnar file).
+ *
+ *  1. One streaming pass computes the mean and the (population) standard deviation of the two
+ *     features, with RunningStats accumulators built over parallel chunks of the file and merged.
+ *  2. A second streaming pass standardizes every sample and writes it out.
+ *
+ * standardizeToFiles keeps only two accumulators and the output buffers in memory, whatever the size
+ * of the file. standardize also returns the standardized matrices, for datasets that fit in memory.
+ *
+ * @author Angel Cruz
+ * */
+public class LocalStandardizer {
+    /* Number of numerical features taken from every row */
+    static final int FEATURES = 2;
+
+    private LocalStandardizer()
+    {}
+
+    /* Destination of the standardized samples of the second pass, in the order of the input */
+    private interface SampleSink
+    {
+        void accept(long i, double[] sample);
+    }
+
+    /**
+     * Method to standardize the dataset into memory, optionally saving it too.
+     *
+     * @param dataPath     Raw dataset, csv with a header
+     * @param headers      Names of the two features and of the target
+     * @param outputPrefix Prefix of the output files, as in PipeLine, or null to keep the data in memory only
+     * @return Standardized samples and statistics of the features
+     * */
+    public static StandardizedDataset standardize(String dataPath, List<String> headers, Path outputPrefix) throws IOException
+    {
+        Path input = Paths.get(dataPath);
+        RunningStats stats = statistics(input);
+        if(stats.count() > Integer.MAX_VALUE - 8)
+            throw new IOException(dataPath + " has too many samples to be kept in memory, " + stats.count()
+                    + ". Use PipeLine.extractAndTransform and train out of core.");
+
+        int N = (int) stats.count();
+        DenseMatrix X = new DenseMatrix(N, FEATURES), y = new DenseMatrix(N, 1);
+        transform(input, headers, stats, outputPrefix, (i, sample) -> {
+            System.arraycopy(sample, 0, X.data, (int) i * FEATURES, FEATURES);
+            y.data[(int) i] = sample[FEATURES];
+        });
+
+        return new StandardizedDataset(headers.toArray(new String[0]), X, y, mean(stats), std(stats));
+    }
+
+    /**
+     * Method to standardize the dataset into the output files only, in bounded memory whatever the
+     * number of rows.
+     *
+     * @param dataPath     Raw dataset, csv with a header
+     * @param headers      Names of the two features and of the target
+     * @param outputPrefix Prefix of the output files, as in PipeLine
+     * @return Statistics of the features
+     * */
+    public static RunningStats standardizeToFiles(String dataPath, List<String> headers, Path outputPrefix) throws IOException
+    {
+        Path input = Paths.get(dataPath);
+        RunningStats stats = statistics(input);
+        transform(input, headers, stats, outputPrefix, null);
+        return stats;
+    }
+
+    /* First pass, parallel chunks of the file accumulate their own statistics, merged at the end */
+    private static RunningStats statistics(Path input) throws IOException
+    {
+        try(Stream<String> lines = Files.lines(input, StandardCharsets.UTF_8))
+        {
+            return lines.parallel()
+                    .map(LocalStandardizer::parseRow)
+                    .filter(Objects::nonNull)
+                    .collect(() -> new RunningStats(FEATURES), RunningStats::add, RunningStats::merge);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    private static double[] mean(RunningStats stats)
+    {
+        double[] mean = new double[FEATURES];
+        for(int j = 0; j < FEATURES; j++)
+            mean[j] = stats.mean(j);
+        return mean;
+    }
+
+    private static double[] std(RunningStats stats)
+    {
+        double[] std = new double[FEATURES];
+        for(int j = 0; j < FEATURES; j++)
+            std[j] = stats.std(j);
+        return std;
+    }
+
+    /**
+     * Second pass, standardize every sample in the order of the input into the sink and/or the output files.
+     *
+     * @param outputPrefix Prefix of the output files, null to write no file
+     * @param sink         Receiver of the standardized samples, null to only write the files
+     * */
+    private static void transform(Path input, List<String> headers, RunningStats stats, Path outputPrefix, SampleSink sink) throws IOException
+    {
+        double[] mean = mean(stats), std = std(stats);
+        long N = stats.count();
+
+        Path csv = null, csvTmp = null, columnar = null;
+        if(outputPrefix != null)
+        {
+            csv = outputPrefix.resolveSibling(outputPrefix.getFileName() + "-00000-of-00001.csv");
+            csvTmp = csv.resolveSibling(csv.getFileName() + ".tmp");
+            columnar = outputPrefix.resolveSibling(outputPrefix.getFileName() + ColumnarDataset.EXTENSION);
+            if(csv.getParent() != null)
+                Files.createDirectories(csv.getParent());
+        }
+
+        try
+        {
+            try(BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+                BufferedWriter writer = (csvTmp == null) ? null : Files.newBufferedWriter(csvTmp, StandardCharsets.UTF_8);
+                ColumnarDataset.Writer binary = (columnar == null) ? null
+                        : new ColumnarDataset.Writer(columnar, headers.toArray(new String[0]), N))
+            {
+                try
+                {
+                    if(writer != null)
+                    {
+                        writer.write(String.join(",", headers));
+                        writer.newLine();
+                    }
+
+                    String line;
+                    StringBuilder out = new StringBuilder(64);
+                    long i = 0;
+                    while((line = reader.readLine()) != null)
+                    {
+                        double[] sample = parseRow(line);
+                        if(sample == null)
+                            continue;
+                        if(i == N)
+                            throw new IOException(input + " changed while it was being standardized.");
+
+                        for(int j = 0; j < FEATURES; j++)
+                            sample[j] = (sample[j] - mean[j]) / std[j]; /* Standardize value */
+                        if(sink != null)
+                            sink.accept(i, sample);
+                        i++;
+
+                        if(writer != null)
+                        {
+                            out.setLength(0);
+                            out.append(sample[0]).append(',').append(sample[1]).append(',').append(sample[2]);
+                            writer.write(out.toString());
+                            writer.newLine();
+                            binary.append(sample);
+                        }
+                    }
+                    if(i != N)
+                        throw new IOException(input + " changed while it was being standardized.");
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    // Never publish a columnar file of a failed pass, even when it got all its rows
+                    if(binary != null)
+                        binary.abort();
+                    throw e;
+                }
+            }
+            if(csv != null)
+                Files.move(csvTmp, csv, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Leave no partial csv behind, the previous output (if any) stays as it was
+            if(csvTmp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(csvTmp);
+                }
+                catch (IOException suppressed)
+                {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Method to extract a sample from a line of the raw dataset, with the same rules as the Beam
+     * pipeline: the first two values must be numerical features and the last value is the target.
+     *
+     * @return {feature 1, feature 2, target}, or null when the line is not a valid sample (e.g. the header)
+     * */
+    static double[] parseRow(String line)
+    {
+        String[] values = line.split(",");
+        if(values.length < FEATURES + 1)
+            return null;
+
+        try
+        {
+            double[] sample = new double[FEATURES + 1];
+            for(int j = 0; j < FEATURES; j++)
+                sample[j] = Double.parseDouble(values[j]);
+            sample[FEATURES] = Double.parseDouble(values[values.length - 1]);
+            return sample;
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+}
@@ -8,86 +8,209 @@ import org.apache.beam.sdk.transforms.*;
 import org.apache.beam.sdk.values.*;
 
 import java.io.BufferedReader;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.StringTokenizer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.JOptionPane;
 
 /**
  * Pipeline class to performe ETL based on the given dataset. The dataset will be normalized
- * and finally saved into a csv file.
+ * and handed to the model in memory, and optionally saved into a csv file.
  *
  * @author Angel Cruz
  * */
 public class PipeLine {
+    /* Suffix of the standardized csv file, after the output prefix */
+    public static final String CSV_SUFFIX = "-00000-of-00001.csv";
+    /* Rows per block when the csv output of Beam is converted to the columnar format */
+    static final int COLUMNAR_BLOCK_ROWS = 1 << 14;
+
     /*
-     * Path where the standardized data will be store
+     * Prefix of the files where the standardized data will be store, null to keep it in memory only
      * */
-    final static String saveInPath = "my-utils/src/main/resources/StandardizedData";
+    private final Path outputPrefix;
+
+    private static final Logger LOGGER = Logger.getLogger(PipeLine.class.getName());
 
     /* Array to store the dataset header */
     public String[] header;
 
     /**
-     * Main PipeLine constructor, we will save the dataset path to carry out the
-     * normalization of the data.
+     * Engine used to standardize the dataset.
+     *
+     *  - BEAM.  The Apache Beam graph (DirectRunner), for inputs Beam can read from anywhere.
+     *  - LOCAL. The single-machine LocalStandardizer, without Beam's startup cost.
+     *  - AUTO.  LOCAL when the input is a regular file of this machine, BEAM otherwise.
+     * */
+    public enum Engine { BEAM, LOCAL, AUTO }
+
+    /**
+     * Constructor of a pipeline keeping the standardized data in memory only.
      * */
     public PipeLine()
-    {}
+    {
+        this(null);
+    }
 
     /**
-     * Method to carry out the extraction and transformation of the data, and finally return
-     * the normalized data.
+     * Constructor of a pipeline that also saves the standardized data, as outputPrefix + CSV_SUFFIX
+     * and outputPrefix + ColumnarDataset.EXTENSION.
+     *
+     * @param outputPrefix Prefix of the output files, null to keep the data in memory only
+     * */
+    public PipeLine(Path outputPrefix)
+    {
+        this.outputPrefix = (outputPrefix == null) ? null : outputPrefix.toAbsolutePath();
+    }
+
+    /**
+     * @return Prefix of the output files, or null when the data is kept in memory only.
+     * */
+    public Path getOutputPrefix()
+    {
+        return outputPrefix;
+    }
+
+    /**
+     * Method to standardize a local dataset and get it straight in memory, ready for
+     * LogisticRegression.fit, without writing and parsing it back. When the pipeline has an output
+     * prefix the data is saved as well.
      *
      * @param dataPath Dataset file path
      * */
-    public static boolean extractAndTransform(String dataPath)
+    public StandardizedDataset standardize(String dataPath) throws IOException
     {
-        /* Define the pipeline */
-        PipelineOptions options = PipelineOptionsFactory.create();
-        Pipeline p = Pipeline.create(options);
+        if(!Files.isRegularFile(Paths.get(dataPath)))
+            throw new NoSuchFileException(dataPath);
 
-        /*
-        * Load the dataset from the file. Then, extract the headers to map each
-        * value to its corresponding feature.
-        */
-        PCollection<String> raw_data = p
-                    .apply("Load each line of the dataset", TextIO.read().from(dataPath));
+        StandardizedDataset dataset = LocalStandardizer.standardize(dataPath, parseHeaders(dataPath), outputPrefix);
+        this.header = dataset.header.clone();
+        return dataset;
+    }
 
-        List<String> headers = new ArrayList<>();
-        try
+    /**
+     * Method to carry out the extraction and transformation of the data into the output files.
+     *
+     * @param dataPath Dataset file path
+     * */
+    public boolean extractAndTransform(String dataPath)
+    {
+        return extractAndTransform(dataPath, Engine.AUTO);
+    }
+
+    /**
+     * Method to carry out the extraction and transformation of the data into the output files with
+     * the given engine. Both engines produce the same outputs.
+     *
+     * @param dataPath Dataset file path
+     * @param engine   Engine used to standardize the data
+     * @return false when the data could not be standardized. LOCAL then leaves the previous output files as they were
+     * */
+    public boolean extractAndTransform(String dataPath, Engine engine)
+    {
+        requireOutput();
+        List<String> headers = readHeaders(dataPath);
+        if(headers == null)
+            return false;
+
+        if(engine == Engine.AUTO)
+            engine = Files.isRegularFile(Paths.get(dataPath)) ? Engine.LOCAL : Engine.BEAM;
+
+        if(engine == Engine.LOCAL)
         {
-            BufferedReader br = new BufferedReader(new FileReader(dataPath));
-            String headerLine = br.readLine();
-            headers = Arrays.asList(headerLine.split(","));
+            try
+            {
+                LocalStandardizer.standardizeToFiles(dataPath, headers, outputPrefix);
+                return true;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                LOGGER.log(Level.WARNING, "Could not standardize " + dataPath + ".", e);
+                return false;
+            }
+        }
+        return runBeamPipeline(dataPath, headers, outputPrefix.toString());
+    }
 
-            if(headers.size() < 3)
-                throw new Exception("Invalid number of features...");
+    private void requireOutput()
+    {
+        if(outputPrefix == null)
+            throw new IllegalStateException("This pipeline keeps the data in memory only, it has no output prefix.");
+    }
 
-            // Getting the first two features and the last one which should be the labels.
-            headers= new ArrayList<String>(Arrays.asList(headers.get(0),headers.get(1),headers.get(headers.size() - 1)));
+    /**
+     * Method to get the names of the first two features and of the label (last column), or null
+     * when the dataset does not have enough columns.
+     * */
+    private static List<String> readHeaders(String dataPath)
+    {
+        try
+        {
+            return parseHeaders(dataPath);
         }
         catch(Exception e)
         {
             String message= "InfoBox: Data must be at least with two features and at the end the label.";
             JOptionPane.showMessageDialog(null, message,"Invalid number of features", JOptionPane.INFORMATION_MESSAGE);
 
+            return null;
+        }
+    }
+
+    private static List<String> parseHeaders(String dataPath) throws IOException
+    {
+        try(BufferedReader br = new BufferedReader(new FileReader(dataPath)))
+        {
+            String headerLine = br.readLine();
+            List<String> headers = (headerLine == null) ? Collections.emptyList() : Arrays.asList(headerLine.split(","));
+
+            if(headers.size() < 3)
+                throw new IOException("Data must be at least with two features and at the end the label.");
+
+            // Getting the first two features and the last one which should be the labels.
+            return new ArrayList<String>(Arrays.asList(headers.get(0),headers.get(1),headers.get(headers.size() - 1)));
+        }
+    }
+
+    private static boolean runBeamPipeline(String dataPath, List<String> headers, String saveInPath)
+    {
+        /* The output directory must exist before the columnar file is written, TextIO only creates it lazily */
+        try
+        {
+            Path parent = Paths.get(saveInPath).getParent();
+            if(parent != null)
+                Files.createDirectories(parent);
+        }
+        catch (IOException e)
+        {
+            System.out.println("An error has ocurred.\n Exception caught. " + e.getMessage());
             return false;
         }
 
+        /* Define the pipeline */
+        PipelineOptions options = PipelineOptionsFactory.create();
+        Pipeline p = Pipeline.create(options);
+
+        /*
+        * Load the dataset from the file. The headers map each value to its corresponding feature.
+        */
+        PCollection<String> raw_data = p
+                    .apply("Load each line of the dataset", TextIO.read().from(dataPath));
+
         PCollection<String> headersPCollection = p
                 .apply("CreateHeaders", Create.of(String.join(",", headers)));
-        PCollectionView<List<String>> headersView = p
-                .apply("Transform to PCollectionView", Create.of(Collections.singletonList(headers)))
-                .apply(View.asSingleton());
 
         /*
          * Since the Linear Regression model take two numerical features as input, we'll
@@ -140,178 +263,71 @@ public class PipeLine {
         }));
 
         /*
-        * Since "population" PCollection will be an unordered KV map, we could lose the corresponding order of the
-        * features and labels. We can use this structure to compute statistics, like mean and standard deviation
-        * efficiently using Mean.perKey().
-        *
-        * And we'll use "samples" PCollection to Standardize the data, since, it preserves the order of the
-        * corresponding features and labels in a single List.
+        * Every sample is parsed once into a list in the order of the header: feature 1, feature 2, target.
         *
         * */
-        final TupleTag<KV<String, Double>> populationTag = new TupleTag<KV<String, Double>>(){};
-        final TupleTag<List<KV<String, Double>>> samplesTag = new TupleTag<List<KV<String, Double>>>(){};
-
-        PCollectionTuple mixedCollection = rows
-                .apply("Map values into KV<Feature,Value> | List<KV<Feature,Value>>",
-                        ParDo.of(new DoFn<String, KV<String, Double>>() {
-                            @ProcessElement
-                            public void apply(@Element String line, ProcessContext c)
-                            {
-                                List<String> headers = c.sideInput(headersView);
-                                String[] values = line.split(",");
-                                int n = headers.size();
-                                String key;
-                                Double value;
-                                try
-                                {
-                                    List<KV<String,Double>> sample = new ArrayList<>();
-                                    for(int i = 0; i < n - 1; i++)
-                                    {
-                                        key = headers.get(i);
-                                        value = Double.parseDouble(values[i]);
-
-                                        // population
-                                        c.output(KV.of(key,value));
-                                        // samples
-                                        sample.add(KV.of(key,value));
-                                    }
-                                    // Add the target
-                                    sample.add(KV.of("Target", Double.parseDouble(values[n-1])));
-                                    c.output(samplesTag, sample);
-                                }
-                                catch(Exception e){}
-                            }
-                        }).withSideInputs(headersView).withOutputTags(populationTag, TupleTagList.of(samplesTag)));
-
-        PCollection<KV<String,Double>> population = mixedCollection.get(populationTag);
-        PCollection<List<KV<String,Double>>> samples = mixedCollection.get(samplesTag);
-
-        /*
-        * In order to standardize the data, first we need to compute the necessary values, such as,
-        * the mean and standard deviation. Once we have calculated those values, we will standardize
-        * the data and finally save it in a csv file.
-        *
-        * */
-
-        /*
-        * Computing the population's mean
-        *
-        */
-        PCollection<KV<String, Double>> meanPerKey = population
-                .apply("Compute MeanPerKey", Mean.perKey());
-        PCollectionView<List<KV<String,Double>>> meanView = meanPerKey
-                .apply(View.asList());
-
-        /*
-        * Computing the population's standard deviation
-        *
-        */
-        PCollection<KV<String,Double>> stdPerKey = population
-                .apply(ParDo.of(new DoFn<KV<String, Double>, KV<String, Double>>() {
+        PCollection<List<Double>> samples = rows
+                .apply("Parse samples", ParDo.of(new DoFn<String, List<Double>>() {
                     @ProcessElement
-                    public void squaredDifference(@Element KV<String,Double> e, ProcessContext c)
+                    public void apply(@Element String line, ProcessContext c)
                     {
-                        List<KV<String,Double>> meanList = c.sideInput(meanView);
-                        Double result;
-                        String key;
-
-                        for(KV<String,Double> mean : meanList)
+                        String[] values = line.split(",");
+                        try
                         {
-                            if(mean.getKey().equals(e.getKey()))
-                            {
-                                key = e.getKey();
-                                result = Math.pow(e.getValue() - mean.getValue(), 2);
-
-                                // Return the SquaredDifference
-                                c.output(KV.of(key,result));
-                                break;
-                            }
+                            List<Double> sample = new ArrayList<>(values.length);
+                            for(String value : values)
+                                sample.add(Double.parseDouble(value));
+                            c.output(sample);
                         }
-                    }
-                }).withSideInputs(meanView))
-                .apply(Mean.perKey())
-                .apply("Squared Root", ParDo.of(new DoFn<KV<String, Double>, KV<String, Double>>() {
-                    @ProcessElement
-                    public void squaredRoot(@Element KV<String,Double> e, ProcessContext c)
-                    {
-                        String key = e.getKey();
-                        Double value = Math.sqrt(e.getValue());
-
-                        c.output(KV.of(key,value));
+                        catch(Exception e){}
                     }
                 }));
-        PCollectionView<List<KV<String,Double>>> stdView = stdPerKey
-                .apply(View.asList());
+
+        /*
+        * In order to standardize the data, first we need to compute the mean and standard deviation of
+        * the features. A single combiner accumulates the count, mean and M2 of all the features at once,
+        * and its result is a map from the feature name to (mean, std) used as one side input.
+        *
+        * */
+        final List<String> features = new ArrayList<String>(headers.subList(0, headers.size() - 1));
+        PCollectionView<Map<String, KV<Double, Double>>> statsView = samples
+                .apply("Compute feature statistics", Combine.globally(new FeatureStatsFn(features)).asSingletonView());
 
         /*
         * Once we have calculated the necessary statistics, we can start standardizing the samples,
-        * as in the following code.
+        * as in the following code. The target is kept as it is.
         *
         * */
-        PCollection<List<KV<String,Double>>> standardizedData = samples
-                .apply("Standardizing Data", ParDo.of(new DoFn<List<KV<String,Double>>, List<KV<String,Double>>>() {
+        PCollection<List<Double>> orderedData = samples
+                .apply("Standardizing Data", ParDo.of(new DoFn<List<Double>, List<Double>>() {
                     @ProcessElement
-                    public void standardizeData(@Element List<KV<String, Double>> e, ProcessContext c)
+                    public void standardizeData(@Element List<Double> e, ProcessContext c)
                     {
-                        String key;
-                        Double value;
-                        List<KV<String,Double>> output = new ArrayList<>();
-                        Double mean = 0.0, std = 1.0;
-                        List<KV<String,Double>> meanList = c.sideInput(meanView);
-                        List<KV<String,Double>> stdList = c.sideInput(stdView);
-
-                        for(KV<String,Double> v : e)
+                        Map<String, KV<Double, Double>> stats = c.sideInput(statsView);
+                        List<Double> output = new ArrayList<>(e.size());
+
+                        for(int j = 0; j < features.size(); j++)
                         {
-                            if(v.getKey().equals("Target"))
-                            {
-                                output.add(KV.of("Target", v.getValue()));
-                                continue;
-                            }
-
-                            if (meanList.get(0).getKey().equals(v.getKey()))
-                                mean = meanList.get(0).getValue();
-                            else
-                                mean = meanList.get(1).getValue();
-
-                            if (stdList.get(0).getKey().equals(v.getKey()))
-                                std = stdList.get(0).getValue();
-                            else
-                                std = stdList.get(1).getValue();
-
-                            key = v.getKey();
-                            value = (v.getValue() - mean) / std; /* Standardize value */
-
-                            output.add(KV.of(key, value));
+                            KV<Double, Double> meanStd = stats.get(features.get(j));
+                            output.add((e.get(j) - meanStd.getKey()) / meanStd.getValue()); /* Standardize value */
                         }
+                        output.add(e.get(features.size()));
                         c.output(output);
                     }
-                }).withSideInputs(meanView, stdView));
-
+                }).withSideInputs(statsView));
 
         /*
         * Finally, we can save the final samples, which are the one we already preprocess
         *
         * */
-        PCollection<String> PreprocessedData = standardizedData.apply("Turn sample to a string line",
-                ParDo.of(new DoFn<List<KV<String, Double>>, String>() {
+        PCollection<String> PreprocessedData = orderedData.apply("Turn sample to a string line",
+                ParDo.of(new DoFn<List<Double>, String>() {
             @ProcessElement
-            public void apply(@Element List<KV<String, Double>> e, ProcessContext c)
+            public void apply(@Element List<Double> e, ProcessContext c)
             {
-                List<String> headers = c.sideInput(headersView);
-                String output, header;
-
-                header = headers.get(0);
-                if (e.get(0).getKey().equals(header))
-                    output = e.get(0).getValue() + "," + e.get(1).getValue();
-                else
-                    output = e.get(1).getValue() + "," + e.get(0).getValue();
-
-                // Add target
-                output = output + "," + e.get(2).getValue();
-
-                c.output(output);
+                c.output(e.get(0) + "," + e.get(1) + "," + e.get(2));
             }
-        }).withSideInputs(headersView));
+        }));
 
         // Concatenate heades and standardized samples
         PCollectionList<String> combinedElements = PCollectionList.of(headersPCollection).and(PreprocessedData);
@@ -328,15 +344,38 @@ public class PipeLine {
         catch (Exception e)
         {
             System.out.println("An error has ocurred.\n Exception caught. " + e.getMessage());
+            return false;
         }
 
+        /*
+        * Besides the csv file, save the samples in the binary columnar format, which loadMatrices
+        * memory-maps instead of parsing text. The csv output is streamed into it block by block once
+        * the pipeline is done, so no step ever holds the whole dataset.
+        *
+        * */
+        Path csv = Paths.get(saveInPath + CSV_SUFFIX);
+        try(RowBlockSource source = CsvDataset.blocks(csv))
+        {
+            ColumnarDataset.write(Paths.get(saveInPath + ColumnarDataset.EXTENSION), headers.toArray(new String[0]), source, COLUMNAR_BLOCK_ROWS);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // loadMatrices falls back to the csv, which is newer than any previous columnar file
+            LOGGER.log(Level.WARNING, "Could not write the columnar copy of " + csv + ".", e);
+        }
         return true;
     }
 
+    /**
+     * Method to load the standardized csv file as lists, "X" (first two columns) and "y" (label).
+     * Prefer loadMatrices, this boxes every value.
+     * */
     public Map<String,List<List<Double>>> loadDataset()
     {
+        requireOutput();
+
         // Define csv file url
-        String url = saveInPath + "-00000-of-00001.csv";
+        String url = outputPrefix + CSV_SUFFIX;
 
         // Initialize arrays to store the data
         List<List<Double>> x_data = new ArrayList<>();
@@ -344,38 +383,19 @@ public class PipeLine {
 
         try
         {
-            String line, token;
-            StringTokenizer tokens;
-            BufferedReader reader = new BufferedReader(new FileReader(url));
+            CsvDataset dataset = CsvDataset.read(Paths.get(url));
 
             // Save header
-            this.header = reader.readLine().split(",");
+            this.header = dataset.names();
 
-            // Read the file lines
-            while((line = reader.readLine()) != null)
+            double[] a = dataset.column(0), b = dataset.column(1), labels = dataset.column(dataset.cols() - 1);
+            for(int i = 0; i < dataset.rows(); i++)
             {
-                tokens = new StringTokenizer(line, ",");
-                List<Double> sample = new ArrayList<>();
-                while(tokens.hasMoreTokens())
-                {
-                    token = tokens.nextToken();
-                    double finalToken = Double.parseDouble(token);
-
-                    if(sample.size() == 2) // Save sample's label
-                    {
-                        y_data.add(new ArrayList<Double>(){{
-                            add(finalToken);
-                        }});
-                        break;
-                    }
-                    // Store numerical value
-                    sample.add(finalToken);
-                }
-                // Store sample
-                x_data.add(sample);
+                x_data.add(Arrays.asList(a[i], b[i]));
+                y_data.add(Collections.singletonList(labels[i]));
             }
         }
-        catch (FileNotFoundException e)
+        catch (NoSuchFileException e)
         {
             System.out.println("File Not Found, exception caught. " + e.getMessage());
         } catch (IOException e) {
@@ -391,6 +411,82 @@ public class PipeLine {
         return data;
     }
 
+    /**
+     * Method to load the standardized dataset as primitive matrices, "X" (N x 2) and "y" (N x 1).
+     * The binary columnar file written by the pipeline is memory-mapped and X and y are bulk-copied
+     * out of it when it is up to date, otherwise the csv file is parsed.
+     * */
+    public Map<String, DenseMatrix> loadMatrices()
+    {
+        requireOutput();
+        Path columnar = Paths.get(outputPrefix + ColumnarDataset.EXTENSION);
+        Path csv = Paths.get(outputPrefix + CSV_SUFFIX);
+
+        try
+        {
+            if(Files.exists(columnar) && (!Files.exists(csv)
+                    || Files.getLastModifiedTime(columnar).compareTo(Files.getLastModifiedTime(csv)) >= 0))
+            {
+                try(ColumnarDataset dataset = ColumnarDataset.open(columnar))
+                {
+                    this.header = dataset.names();
+
+                    Map<String, DenseMatrix> data = new HashMap<String, DenseMatrix>();
+                    data.put("X", dataset.toMatrix(0, dataset.cols() - 1));
+                    data.put("y", dataset.toMatrix(dataset.cols() - 1, dataset.cols()));
+                    return data;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.log(Level.WARNING, "Could not load " + columnar + ", falling back to the csv file.", e);
+        }
+
+        // Fall back to the csv file
+        try
+        {
+            CsvDataset dataset = CsvDataset.read(csv);
+            this.header = dataset.names();
+
+            Map<String, DenseMatrix> data = new HashMap<String, DenseMatrix>();
+            data.put("X", dataset.toMatrix(0, dataset.cols() - 1));
+            data.put("y", dataset.toMatrix(dataset.cols() - 1, dataset.cols()));
+            return data;
+        }
+        catch (NoSuchFileException e)
+        {
+            LOGGER.log(Level.WARNING, "Standardized dataset " + csv + " not found, returning empty matrices.", e);
+
+            Map<String, DenseMatrix> data = new HashMap<String, DenseMatrix>();
+            data.put("X", new DenseMatrix(0, 2));
+            data.put("y", new DenseMatrix(0, 1));
+            return data;
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Method to open the standardized dataset as a source of row blocks, to train out of core on data
+     * that does not fit in memory. Like loadMatrices, the columnar file is preferred when it is up to
+     * date, otherwise the csv file is streamed. The caller must close the source.
+     * */
+    public RowBlockSource openBlocks() throws IOException
+    {
+        requireOutput();
+        Path columnar = Paths.get(outputPrefix + ColumnarDataset.EXTENSION);
+        Path csv = Paths.get(outputPrefix + CSV_SUFFIX);
+
+        if(Files.exists(columnar) && (!Files.exists(csv)
+                || Files.getLastModifiedTime(columnar).compareTo(Files.getLastModifiedTime(csv)) >= 0))
+            return ColumnarDataset.blocks(columnar);
+
+        return CsvDataset.blocks(csv);
+    }
+
     public String[] get_header()
     {
         return this.header;
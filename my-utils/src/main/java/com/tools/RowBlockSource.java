@@ -0,0 +1,77 @@
+package com.tools;
+
+import java.io.IOException;
+
+/**
+ * Dataset read as a sequence of fixed-size blocks of rows, for training over datasets larger than
+ * the heap. The blocks are copied into matrices owned by the caller, so the memory used is bounded
+ * by the block size whatever the size of the dataset. Every row has features() values followed by
+ * its label.
+ *
+ * @author Angel Cruz
+ * */
+public interface RowBlockSource extends AutoCloseable {
+    /**
+     * @return Number of features (d) of every row.
+     * */
+    int features();
+
+    /**
+     * Method to start a new pass over the dataset, from its first row.
+     * */
+    void reset() throws IOException;
+
+    /**
+     * Method to read the next block of rows.
+     *
+     * @param X Output, the features of the rows are written to X[0, n), X must have features() columns
+     * @param y Output, the labels of the rows are written to y[0, n), y must have one column
+     * @return Number of rows n read, at most X.rows, 0 at the end of the pass
+     * */
+    int next(DenseMatrix X, DenseMatrix y) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Method to read in-memory matrices block by block, e.g. to train the same way on a small dataset.
+     * */
+    static RowBlockSource of(DenseMatrix X, DenseMatrix y)
+    {
+        if(X.rows != y.rows || y.cols != 1)
+            throw new IllegalArgumentException("X has " + X.rows + " samples but y is " + y.rows + " x " + y.cols + ".");
+
+        return new RowBlockSource() {
+            int position = 0;
+
+            @Override
+            public int features()
+            {
+                return X.cols;
+            }
+
+            @Override
+            public void reset()
+            {
+                position = 0;
+            }
+
+            @Override
+            public int next(DenseMatrix blockX, DenseMatrix blockY)
+            {
+                int n = Math.min(blockX.rows, X.rows - position);
+                for(int i = 0; i < n; i++)
+                {
+                    System.arraycopy(X.data, X.index(position + i, 0), blockX.data, blockX.index(i, 0), X.cols);
+                    blockY.set(i, 0, y.get(position + i, 0));
+                }
+                position += n;
+                return n;
+            }
+
+            @Override
+            public void close()
+            {}
+        };
+    }
+}
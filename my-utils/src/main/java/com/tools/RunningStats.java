@@ -0,0 +1,115 @@
+package com.tools;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Streaming per-feature mean and variance accumulator (Welford). Two accumulators built over different
+ * parts of the data can be merged exactly (Chan et al.), so the statistics can be computed in parallel
+ * chunks or as a combiner, in a single pass and without storing the samples.
+ *
+ * @author Angel Cruz
+ * */
+public class RunningStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /* Number of samples */
+    long count;
+    /* Running mean and sum of squared differences to the mean, per feature */
+    final double[] mean;
+    final double[] m2;
+
+    /**
+     * @param features Number of features (d)
+     * */
+    public RunningStats(int features)
+    {
+        this.mean = new double[features];
+        this.m2 = new double[features];
+    }
+
+    /**
+     * Method to add a sample, only its first d values are used.
+     * */
+    public RunningStats add(double[] sample)
+    {
+        count++;
+        for(int j = 0; j < mean.length; j++)
+        {
+            double delta = sample[j] - mean[j];
+            mean[j] += delta / count;
+            m2[j] += delta * (sample[j] - mean[j]);
+        }
+        return this;
+    }
+
+    /**
+     * Method to add a sample given as a list, as the Beam pipeline carries them.
+     * */
+    public RunningStats add(List<Double> sample)
+    {
+        count++;
+        for(int j = 0; j < mean.length; j++)
+        {
+            double value = sample.get(j);
+            double delta = value - mean[j];
+            mean[j] += delta / count;
+            m2[j] += delta * (value - mean[j]);
+        }
+        return this;
+    }
+
+    /**
+     * Method to merge the statistics of another accumulator into this one.
+     * */
+    public RunningStats merge(RunningStats other)
+    {
+        if(other.count == 0)
+            return this;
+        if(count == 0)
+        {
+            count = other.count;
+            System.arraycopy(other.mean, 0, mean, 0, mean.length);
+            System.arraycopy(other.m2, 0, m2, 0, m2.length);
+            return this;
+        }
+
+        long n = count + other.count;
+        for(int j = 0; j < mean.length; j++)
+        {
+            double delta = other.mean[j] - mean[j];
+            mean[j] += delta * other.count / n;
+            m2[j] += other.m2[j] + delta * delta * ((double) count * other.count / n);
+        }
+        count = n;
+        return this;
+    }
+
+    public long count()
+    {
+        return count;
+    }
+
+    public int features()
+    {
+        return mean.length;
+    }
+
+    public double mean(int j)
+    {
+        return mean[j];
+    }
+
+    /**
+     * @return Population variance of the feature j, the same definition used by the Beam pipeline.
+     * */
+    public double variance(int j)
+    {
+        return count == 0 ? 0 : m2[j] / count;
+    }
+
+    public double std(int j)
+    {
+        return Math.sqrt(variance(j));
+    }
+}
@@ -0,0 +1,49 @@
+package com.tools;
+
+/**
+ * Portable scalar implementation of VectorKernels, always available and used as the fallback when
+ * the Vector API is not.
+ *
+ * @author Angel Cruz
+ * */
+public final class ScalarKernels implements VectorKernels {
+    @Override
+    public String name()
+    {
+        return "scalar";
+    }
+
+    @Override
+    public double dot(double[] a, int aOff, double[] b, int bOff, int n)
+    {
+        double s = 0;
+        for(int i = 0; i < n; i++)
+            s += a[aOff + i] * b[bOff + i];
+
+        return s;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int n)
+    {
+        for(int i = 0; i < n; i++)
+            y[yOff + i] += alpha * x[xOff + i];
+    }
+
+    @Override
+    public double sum(double[] a, int off, int n)
+    {
+        double s = 0;
+        for(int i = 0; i < n; i++)
+            s += a[off + i];
+
+        return s;
+    }
+
+    @Override
+    public void sigmoid(double[] x, int off, int n)
+    {
+        for(int i = off; i < off + n; i++)
+            x[i] = 1 / (1 + Math.exp(-x[i]));
+    }
+}
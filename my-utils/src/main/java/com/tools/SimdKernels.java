@@ -0,0 +1,95 @@
+package com.tools;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of VectorKernels on top of the (incubating) JDK Vector API, using the widest
+ * species of the CPU (AVX2 = 4 doubles, AVX-512 = 8 doubles). Every loop processes full vectors and
+ * finishes the remaining elements with a scalar tail.
+ *
+ * This class is only loaded by Kernels when the JVM runs with --add-modules jdk.incubator.vector.
+ *
+ * @author Angel Cruz
+ * */
+final class SimdKernels implements VectorKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    SimdKernels()
+    {
+        if(SPECIES.length() < 2)
+            throw new UnsupportedOperationException("No SIMD registers wider than a double.");
+    }
+
+    @Override
+    public String name()
+    {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public double dot(double[] a, int aOff, double[] b, int bOff, int n)
+    {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0, bound = SPECIES.loopBound(n);
+        for(; i < bound; i += SPECIES.length())
+        {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOff + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOff + i);
+            acc = acc.add(va.mul(vb));
+        }
+
+        double s = acc.reduceLanes(VectorOperators.ADD);
+        for(; i < n; i++)
+            s += a[aOff + i] * b[bOff + i];
+
+        return s;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int n)
+    {
+        DoubleVector va = DoubleVector.broadcast(SPECIES, alpha);
+        int i = 0, bound = SPECIES.loopBound(n);
+        for(; i < bound; i += SPECIES.length())
+        {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, xOff + i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, yOff + i);
+            vy.add(vx.mul(va)).intoArray(y, yOff + i);
+        }
+
+        for(; i < n; i++)
+            y[yOff + i] += alpha * x[xOff + i];
+    }
+
+    @Override
+    public double sum(double[] a, int off, int n)
+    {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int i = 0, bound = SPECIES.loopBound(n);
+        for(; i < bound; i += SPECIES.length())
+            acc = acc.add(DoubleVector.fromArray(SPECIES, a, off + i));
+
+        double s = acc.reduceLanes(VectorOperators.ADD);
+        for(; i < n; i++)
+            s += a[off + i];
+
+        return s;
+    }
+
+    @Override
+    public void sigmoid(double[] x, int off, int n)
+    {
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        int i = 0, bound = SPECIES.loopBound(n);
+        for(; i < bound; i += SPECIES.length())
+        {
+            DoubleVector z = DoubleVector.fromArray(SPECIES, x, off + i);
+            one.div(z.neg().lanewise(VectorOperators.EXP).add(one)).intoArray(x, off + i);
+        }
+
+        for(; i < n; i++)
+            x[off + i] = 1 / (1 + Math.exp(-x[off + i]));
+    }
+}
@@ -0,0 +1,217 @@
+package com.tools;
+
+import java.util.Arrays;
+
+/**
+ * Sparse matrix in compressed sparse row (CSR) format. Only the non-zero values are stored: the
+ * entries of the row i are values[k] at column columns[k], for k in [rowPtr[first + i], rowPtr[first + i + 1]).
+ * Walking a row costs its number of non-zeros, whatever the number of columns.
+ *
+ * As with DenseMatrix, a matrix can be a view over a block of consecutive rows of another one,
+ * sharing its storage.
+ *
+ * @author Angel Cruz
+ * */
+public class SparseMatrix {
+    /* Non-zero values and their columns, row after row */
+    public final double[] values;
+    public final int[] columns;
+    /* Position in values of the first entry of every row, plus the end of the last row */
+    public final int[] rowPtr;
+    /* Position in rowPtr of the row 0 */
+    public final int first;
+    /* Number of rows and columns of the matrix */
+    public final int rows, cols;
+
+    /**
+     * Main constructor, used to build views over a shared storage.
+     *
+     * @param values  Non-zero values
+     * @param columns Column of every value, sorted inside every row
+     * @param rowPtr  Start of every row in values, followed by the end of the last one
+     * @param first   Position in rowPtr of the row 0
+     * @param rows    Number of rows
+     * @param cols    Number of columns
+     * */
+    public SparseMatrix(double[] values, int[] columns, int[] rowPtr, int first, int rows, int cols)
+    {
+        if(rows < 0 || cols < 0 || first < 0 || first + rows >= rowPtr.length || values.length != columns.length)
+            throw new IllegalArgumentException("Invalid sparse matrix layout. rows " + rows + ", cols " + cols
+                    + ", first " + first + ", " + rowPtr.length + " row pointers, " + values.length + " values and "
+                    + columns.length + " columns.");
+        if(rowPtr[first + rows] > values.length || rowPtr[first] > rowPtr[first + rows])
+            throw new IllegalArgumentException("Row pointers out of the " + values.length + " stored values.");
+
+        this.values = values;
+        this.columns = columns;
+        this.rowPtr = rowPtr;
+        this.first = first;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Constructor of a matrix owning its whole storage.
+     * */
+    public SparseMatrix(double[] values, int[] columns, int[] rowPtr, int cols)
+    {
+        this(values, columns, rowPtr, 0, rowPtr.length - 1, cols);
+    }
+
+    /**
+     * Method to copy the non-zero values of a dense matrix.
+     * */
+    public static SparseMatrix of(DenseMatrix A)
+    {
+        Builder builder = new Builder(A.cols);
+        for(int i = 0; i < A.rows; i++)
+        {
+            for(int j = 0; j < A.cols; j++)
+            {
+                double value = A.get(i, j);
+                if(value != 0)
+                    builder.add(j, value);
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return Number of stored values of the matrix.
+     * */
+    public int nnz()
+    {
+        return rowPtr[first + rows] - rowPtr[first];
+    }
+
+    /* Position in values of the first entry of the row i */
+    public int rowStart(int i)
+    {
+        return rowPtr[first + i];
+    }
+
+    /* Position in values right after the last entry of the row i */
+    public int rowEnd(int i)
+    {
+        return rowPtr[first + i + 1];
+    }
+
+    /**
+     * @return Dot product of the row i with the dense vector x[off .. off + cols), in O(nnz of the row).
+     * */
+    public double dot(int i, double[] x, int off)
+    {
+        double sum = 0;
+        for(int k = rowPtr[first + i], end = rowPtr[first + i + 1]; k < end; k++)
+            sum += values[k] * x[off + columns[k]];
+        return sum;
+    }
+
+    /**
+     * Method to add alpha * row i to the dense vector y[off .. off + cols), in O(nnz of the row).
+     * */
+    public void axpy(int i, double alpha, double[] y, int off)
+    {
+        for(int k = rowPtr[first + i], end = rowPtr[first + i + 1]; k < end; k++)
+            y[off + columns[k]] += alpha * values[k];
+    }
+
+    /**
+     * Method to get a view over the rows [from, to).
+     * */
+    public SparseMatrix slice(int from, int to)
+    {
+        if(from < 0 || to < from || to > rows)
+            throw new IndexOutOfBoundsException("Rows [" + from + ", " + to + ") out of a " + rows + " x " + cols + " matrix.");
+
+        return new SparseMatrix(values, columns, rowPtr, first + from, to - from, cols);
+    }
+
+    /**
+     * Method to expand the matrix into a dense one.
+     * */
+    public DenseMatrix toDense()
+    {
+        DenseMatrix M = new DenseMatrix(rows, cols);
+        for(int i = 0; i < rows; i++)
+        {
+            for(int k = rowStart(i), end = rowEnd(i); k < end; k++)
+                M.data[i * cols + columns[k]] += values[k];
+        }
+        return M;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "SparseMatrix[" + rows + " x " + cols + ", nnz " + nnz() + "]";
+    }
+
+    /**
+     * Builder appending the matrix row by row, with growable arrays.
+     * */
+    public static final class Builder {
+        private double[] values = new double[1024];
+        private int[] columns = new int[1024];
+        private int[] rowPtr = new int[1025];
+        private int rows = 0, nnz = 0;
+        private int cols;
+
+        /**
+         * @param cols Number of columns, grown when a larger column is added
+         * */
+        public Builder(int cols)
+        {
+            this.cols = cols;
+        }
+
+        /**
+         * Method to add a value to the current row, the columns of a row must be added in increasing order.
+         * */
+        public Builder add(int column, double value)
+        {
+            if(column < 0 || (nnz > rowPtr[rows] && column <= columns[nnz - 1]))
+                throw new IllegalArgumentException("Column " + column + " out of order in row " + rows + ".");
+
+            if(nnz == values.length)
+            {
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8, values.length + (values.length >> 1) + 16L);
+                if(capacity == nnz)
+                    throw new IllegalStateException("Too many non-zero values for a sparse matrix.");
+                values = Arrays.copyOf(values, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+            }
+            values[nnz] = value;
+            columns[nnz++] = column;
+            cols = Math.max(cols, column + 1);
+            return this;
+        }
+
+        /**
+         * Method to close the current row and start the next one.
+         * */
+        public Builder endRow()
+        {
+            if(rows + 2 > rowPtr.length)
+                rowPtr = Arrays.copyOf(rowPtr, (int) Math.min(Integer.MAX_VALUE - 8, rowPtr.length + (rowPtr.length >> 1) + 16L));
+            rowPtr[++rows] = nnz;
+            return this;
+        }
+
+        public int rows()
+        {
+            return rows;
+        }
+
+        /**
+         * Method to build the matrix with the rows closed so far, the arrays are trimmed to their size.
+         * */
+        public SparseMatrix build()
+        {
+            int size = rowPtr[rows];
+            return new SparseMatrix(Arrays.copyOf(values, size), Arrays.copyOf(columns, size),
+                    Arrays.copyOf(rowPtr, rows + 1), 0, rows, cols);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.tools;
+
+/**
+ * Result of the preprocessing, handed to the model in memory: the standardized samples and the
+ * statistics used to standardize them, so new samples can be scaled the same way.
+ *
+ * @author Angel Cruz
+ * */
+public class StandardizedDataset {
+    /* Names of the features followed by the name of the target */
+    public final String[] header;
+    /* Standardized features (N x d) and targets (N x 1) */
+    public final DenseMatrix X, y;
+    /* Mean and (population) standard deviation of every raw feature */
+    public final double[] mean, std;
+
+    public StandardizedDataset(String[] header, DenseMatrix X, DenseMatrix y, double[] mean, double[] std)
+    {
+        if(X.rows != y.rows || mean.length != X.cols || std.length != X.cols)
+            throw new IllegalArgumentException("Inconsistent dataset, X " + X + ", y " + y + ", "
+                    + mean.length + " means and " + std.length + " standard deviations.");
+
+        this.header = header;
+        this.X = X;
+        this.y = y;
+        this.mean = mean;
+        this.std = std;
+    }
+
+    /**
+     * Method to standardize a raw sample with the statistics of the dataset, in place.
+     * */
+    public double[] standardize(double[] sample)
+    {
+        for(int j = 0; j < mean.length; j++)
+            sample[j] = (sample[j] - mean[j]) / std[j];
+        return sample;
+    }
+}
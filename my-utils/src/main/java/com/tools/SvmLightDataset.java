@@ -0,0 +1,208 @@
+package com.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Sparse dataset in the svmlight / libsvm text format, loaded into a SparseMatrix of features and a
+ * column of binary labels:
+ *
+ *  label index:value index:value ... # comment
+ *
+ * Only the non-zero values are stored, so a row costs its number of non-zeros whatever the number of
+ * features. Positive labels become 1 and the others 0, so both the {-1, +1} and the {0, 1} conventions
+ * load as the labels of the logistic regression. "qid:" tokens and comments are ignored. The file is
+ * read in windows copied to a small array and the numbers are parsed straight from the bytes.
+ *
+ * @author Angel Cruz
+ * */
+public class SvmLightDataset {
+    /* Window of the file read at once */
+    static final int WINDOW_BYTES = 1 << 16;
+
+    /* Features (N x d) and labels (N x 1) */
+    public final SparseMatrix X;
+    public final DenseMatrix y;
+
+    private SvmLightDataset(SparseMatrix X, DenseMatrix y)
+    {
+        this.X = X;
+        this.y = y;
+    }
+
+    /**
+     * Method to read a dataset with 1-based feature indices (the libsvm convention), the number of
+     * features is the largest index found.
+     *
+     * @param path Dataset file
+     * */
+    public static SvmLightDataset read(Path path) throws IOException
+    {
+        return read(path, 0, false);
+    }
+
+    /**
+     * Method to read a dataset.
+     *
+     * @param path      Dataset file
+     * @param features  Number of features, e.g. the one of the training set when loading a test set, or
+     *                  0 to use the largest index found
+     * @param zeroBased true when the feature indices start at 0, false when they start at 1
+     * */
+    public static SvmLightDataset read(Path path, int features, boolean zeroBased) throws IOException
+    {
+        Parser parser = new Parser(Math.max(features, 0), zeroBased);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            // A line cut by the end of a window is moved to the front before reading the next one
+            byte[] buffer = new byte[WINDOW_BYTES];
+            int filled = 0, i = 0;
+            long position = 0;
+            boolean eof = false;
+            while(true)
+            {
+                int lineEnd = i;
+                while(lineEnd < filled && buffer[lineEnd] != '\n')
+                    lineEnd++;
+
+                if(lineEnd == filled && !eof)
+                {
+                    int keep = filled - i;
+                    if(keep == buffer.length)
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    System.arraycopy(buffer, i, buffer, 0, keep);
+                    int read = channel.read(ByteBuffer.wrap(buffer, keep, buffer.length - keep), position);
+                    if(read < 0)
+                        eof = true;
+                    else
+                        position += read;
+                    filled = keep + Math.max(read, 0);
+                    i = 0;
+                    continue;
+                }
+                if(i >= filled)
+                    break;
+
+                parser.parseLine(buffer, i, lineEnd);
+                i = lineEnd + 1;
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IOException(path + ", line " + parser.line + ": " + e.getMessage(), e);
+        }
+
+        SparseMatrix X = parser.builder.build();
+        if(features > 0 && X.cols > features)
+            throw new IOException(path + " has feature indices beyond the " + features + " features expected.");
+        return new SvmLightDataset(X, new DenseMatrix(Arrays.copyOf(parser.labels, X.rows), X.rows, 1));
+    }
+
+    /**
+     * Line parser, appends every sample to the sparse matrix builder and to the labels.
+     * */
+    private static final class Parser {
+        final SparseMatrix.Builder builder;
+        final int base;
+        double[] labels = new double[1024];
+        long line = 0;
+
+        Parser(int features, boolean zeroBased)
+        {
+            this.builder = new SparseMatrix.Builder(features);
+            this.base = zeroBased ? 0 : 1;
+        }
+
+        void parseLine(byte[] b, int i, int end)
+        {
+            line++;
+
+            // Drop the comment
+            for(int k = i; k < end; k++)
+            {
+                if(b[k] == '#')
+                {
+                    end = k;
+                    break;
+                }
+            }
+
+            i = skipBlanks(b, i, end);
+            if(i == end)
+                return;
+
+            // Label
+            int to = nextBlank(b, i, end);
+            double label = number(b, i, to);
+            int row = builder.rows();
+            if(row == labels.length)
+                labels = Arrays.copyOf(labels, (int) Math.min(Integer.MAX_VALUE - 8, labels.length + (labels.length >> 1) + 16L));
+            labels[row] = (label > 0) ? 1 : 0;
+
+            // index:value pairs
+            for(i = skipBlanks(b, to, end); i < end; i = skipBlanks(b, to, end))
+            {
+                to = nextBlank(b, i, end);
+                int colon = i;
+                while(colon < to && b[colon] != ':')
+                    colon++;
+                if(colon == to)
+                    throw new IllegalArgumentException("Expected index:value, found \"" + text(b, i, to) + "\".");
+                if(colon - i == 3 && b[i] == 'q' && b[i + 1] == 'i' && b[i + 2] == 'd')
+                    continue;
+
+                int index = 0;
+                for(int k = i; k < colon; k++)
+                {
+                    int digit = b[k] - '0';
+                    if(digit < 0 || digit > 9 || index > (Integer.MAX_VALUE - digit) / 10)
+                        throw new IllegalArgumentException("Invalid feature index \"" + text(b, i, colon) + "\".");
+                    index = index * 10 + digit;
+                }
+                if(colon == i || index < base)
+                    throw new IllegalArgumentException("Invalid feature index \"" + text(b, i, colon) + "\".");
+
+                double value = number(b, colon + 1, to);
+                if(value != 0)
+                    builder.add(index - base, value);
+            }
+            builder.endRow();
+        }
+
+        private static double number(byte[] b, int from, int to)
+        {
+            try
+            {
+                return DoubleParser.parse(b, from, to);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid number \"" + text(b, from, to) + "\".");
+            }
+        }
+
+        private static int skipBlanks(byte[] b, int i, int end)
+        {
+            while(i < end && (b[i] == ' ' || b[i] == '\t' || b[i] == '\r'))
+                i++;
+            return i;
+        }
+
+        private static int nextBlank(byte[] b, int i, int end)
+        {
+            while(i < end && b[i] != ' ' && b[i] != '\t' && b[i] != '\r')
+                i++;
+            return i;
+        }
+
+        private static String text(byte[] b, int from, int to)
+        {
+            return new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.tools;
+
+/**
+ * Primitive kernels over double[] ranges used by the hot loops of the toolkit and the model. There is
+ * a portable scalar implementation and a SIMD implementation built on the JDK Vector API, the backend
+ * is picked once at startup by Kernels.get().
+ *
+ * @author Angel Cruz
+ * */
+public interface VectorKernels {
+    /**
+     * @return Name of the backend, for logs and benchmark reports.
+     * */
+    String name();
+
+    /**
+     * Dot product of a[aOff .. aOff + n) and b[bOff .. bOff + n).
+     * */
+    double dot(double[] a, int aOff, double[] b, int bOff, int n);
+
+    /**
+     * y[yOff .. yOff + n) += alpha * x[xOff .. xOff + n).
+     * */
+    void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int n);
+
+    /**
+     * Sum of a[off .. off + n).
+     * */
+    double sum(double[] a, int off, int n);
+
+    /**
+     * In-place logistic function, x = 1 / (1 + exp(-x)), over x[off .. off + n).
+     * */
+    void sigmoid(double[] x, int off, int n);
+}
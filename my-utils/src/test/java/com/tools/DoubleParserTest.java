@@ -0,0 +1,205 @@
+package com.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Deterministic check of the number parser behind CsvDataset (Clinger's fast path, Eisel-Lemire
+ * and the Double.parseDouble fallback). Generates inputs chosen to hit the hard cases of decimal to
+ * binary rounding, writes them to a csv file, loads it with CsvDataset.read and requires every value
+ * to be bit-identical to Double.parseDouble of the same text:
+ *
+ *  - shortest and 17-digit representations of random doubles of every magnitude;
+ *  - exact halfway points between two consecutive doubles, and the decimals just below and above them;
+ *  - subnormals and the normal / subnormal boundary;
+ *  - mantissas of 19 and more digits, with leading and trailing zeros;
+ *  - the limits of the exponent range, overflow to infinity and underflow to zero.
+ *
+ * Runs with mvn test, the build fails when any value differs.
+ *
+ * @author Angel Cruz
+ * */
+public class DoubleParserTest {
+    /* Seed of the random cases, fixed so that a failure can be reproduced */
+    static final long SEED = 42L;
+    /* Random cases of every group */
+    static final int CASES = 100000;
+    /* Mismatches printed before giving up the report */
+    static final int MAX_REPORTED = 20;
+
+    @Test
+    public void parsesLikeDoubleParseDouble() throws IOException
+    {
+        Random rand = new Random(SEED);
+
+        List<String> inputs = new ArrayList<>();
+        limits(inputs);
+        shortest(rand, CASES, inputs);
+        halfway(rand, CASES, inputs);
+        subnormals(rand, CASES, inputs);
+        longMantissas(rand, CASES, inputs);
+
+        int mismatches = check(inputs);
+        assertEquals(0, mismatches, mismatches + " of " + inputs.size() + " values differ from Double.parseDouble.");
+    }
+
+    /* Exponent range limits, overflow and underflow */
+    private static void limits(List<String> inputs)
+    {
+        String[] fixed = {
+                "0", "-0", "0.0", "-0.0", "0e0", "0e-400", "0e400", "1", "-1", "+1", "1.", ".5", "-.5",
+                "9007199254740992", "9007199254740993", "9007199254740995", "18446744073709551615",
+                "1e22", "1e23", "1e-22", "1e-23", "123456789012345678e-5",
+                "1e308", "1.7976931348623157e308", "1.7976931348623158e308", "1.7976931348623159e308",
+                "1e309", "-1e309", "1e400", "9e99999", "1e-307", "2.2250738585072014e-308", "2.2250738585072011e-308",
+                "2.2250738585072012e-308", "4.9e-324", "5e-324", "2.4703282292062327e-324", "2.4703282292062328e-324",
+                "1e-324", "1e-325", "1e-342", "1e-343", "1e-400", "9e-99999", "0.000000000000000000000000000001e30",
+                "100000000000000000000000000000000000000e-38", "7.2057594037927933e16", "1.00000000000000011102230246251565404236316680908203125"
+        };
+        for(String value : fixed)
+            inputs.add(value);
+        for(int e = -345; e <= 310; e++)
+        {
+            inputs.add("1e" + e);
+            inputs.add("9.999999999999999e" + e);
+            inputs.add("5E" + e);
+        }
+    }
+
+    /* Shortest (Double.toString) and 17-significant-digit forms of random doubles */
+    private static void shortest(Random rand, int cases, List<String> inputs)
+    {
+        for(int i = 0; i < cases; i++)
+        {
+            double value = randomDouble(rand);
+            inputs.add(Double.toString(value));
+            inputs.add(String.format("%.16e", value));
+            inputs.add(new BigDecimal(value).round(new java.math.MathContext(1 + rand.nextInt(18))).toString());
+        }
+    }
+
+    /* Exact midpoints between consecutive doubles, and the closest decimals on both sides */
+    private static void halfway(Random rand, int cases, List<String> inputs)
+    {
+        BigDecimal two = BigDecimal.valueOf(2);
+        for(int i = 0; i < cases; i++)
+        {
+            double value = randomDouble(rand);
+            BigDecimal mid = new BigDecimal(value).add(new BigDecimal(Math.nextUp(value))).divide(two);
+            inputs.add(mid.toString());
+
+            BigDecimal ulp = BigDecimal.ONE.movePointLeft(mid.scale() + 2);
+            inputs.add(mid.subtract(ulp).toString());
+            inputs.add(mid.add(ulp).toString());
+            inputs.add(mid.round(new java.math.MathContext(17 + rand.nextInt(4))).toString());
+        }
+    }
+
+    /* Subnormals and values around Double.MIN_NORMAL */
+    private static void subnormals(Random rand, int cases, List<String> inputs)
+    {
+        for(int i = 0; i < cases; i++)
+        {
+            double value = Double.longBitsToDouble(rand.nextLong() & 0x000FFFFFFFFFFFFFL);
+            inputs.add(Double.toString(value));
+            inputs.add(String.format("%.16e", value));
+
+            double boundary = Double.MIN_NORMAL + (rand.nextInt(2001) - 1000) * Double.MIN_VALUE;
+            inputs.add(Double.toString(boundary));
+        }
+    }
+
+    /* Mantissas of 19 to 40 digits, with leading zeros, trailing zeros and a random exponent */
+    private static void longMantissas(Random rand, int cases, List<String> inputs)
+    {
+        StringBuilder text = new StringBuilder(64);
+        for(int i = 0; i < cases; i++)
+        {
+            text.setLength(0);
+            if(rand.nextBoolean())
+                text.append('-');
+            boolean fraction = rand.nextInt(4) == 0;
+            if(fraction)
+                text.append("0.000");
+            int digits = 19 + rand.nextInt(22);
+            text.append((char) ('1' + rand.nextInt(9)));
+            for(int k = 1; k < digits; k++)
+                text.append((char) ('0' + rand.nextInt(10)));
+            if(rand.nextInt(4) == 0)
+                text.append("0000000");
+            if(!fraction && rand.nextBoolean())
+                text.insert(text.length() - rand.nextInt(digits), '.');
+            text.append('e').append(rand.nextInt(700) - 360);
+            inputs.add(text.toString());
+        }
+    }
+
+    /* Random bits, every exponent equally likely */
+    private static double randomDouble(Random rand)
+    {
+        double value;
+        do
+        {
+            value = Double.longBitsToDouble(rand.nextLong());
+        }
+        while(Double.isNaN(value) || Double.isInfinite(value));
+        return value;
+    }
+
+    /**
+     * Method to load the inputs through CsvDataset and compare them with Double.parseDouble.
+     *
+     * @return Number of values that differ
+     * */
+    private static int check(List<String> inputs) throws IOException
+    {
+        Path file = Files.createTempFile("double-parser-check", ".csv");
+        try
+        {
+            try(BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII))
+            {
+                writer.write("value,index");
+                writer.newLine();
+                for(int i = 0; i < inputs.size(); i++)
+                {
+                    writer.write(inputs.get(i));
+                    writer.write(',');
+                    writer.write(Integer.toString(i));
+                    writer.newLine();
+                }
+            }
+
+            CsvDataset dataset = CsvDataset.read(file);
+            if(dataset.rows() != inputs.size())
+                throw new IllegalStateException(dataset.rows() + " rows loaded, " + inputs.size() + " written.");
+
+            double[] parsed = dataset.column(0);
+            int mismatches = 0;
+            for(int i = 0; i < inputs.size(); i++)
+            {
+                double expected = Double.parseDouble(inputs.get(i));
+                if(Double.doubleToLongBits(parsed[i]) != Double.doubleToLongBits(expected))
+                {
+                    if(mismatches++ < MAX_REPORTED)
+                        System.out.println("\"" + inputs.get(i) + "\" parsed as " + parsed[i] + ", expected " + expected + ".");
+                }
+            }
+            return mismatches;
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+}